@@ -0,0 +1,168 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for whole-chain operations. Each trial builds a chain of the
+ * given length once; the benchmarks then leave it at that length. Chains
+ * take a while to build, so the default grid is small (a short and a long
+ * chain, everything else fixed); the README lists the other values worth
+ * passing with -p.
+ *
+ * @author Sara Jaljaa
+ * @author Jenifer Silva
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+@State(Scope.Benchmark)
+public class ChainBenchmark {
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The number of blocks reorg() rolls back.
+   */
+  static final int REORG_DEPTH = 100;
+
+  // +------------+--------------------------------------------------
+  // | Parameters |
+  // +------------+
+
+  /**
+   * The number of blocks in the chain.
+   */
+  @Param({"1000", "100000"})
+  public int length;
+
+  /**
+   * The number of users.
+   */
+  @Param({"1000"})
+  public int users;
+
+  /**
+   * How users are chosen for each transaction.
+   */
+  @Param({"uniform"})
+  public String distribution;
+
+  /**
+   * The number of leading zero bits each block needs.
+   */
+  @Param({"0"})
+  public int difficulty;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The chain.
+   */
+  private BlockChain chain;
+
+  /**
+   * A block that can be appended to the chain.
+   */
+  private Block next;
+
+  /**
+   * The user whose balance we look up.
+   */
+  private String user;
+
+  /**
+   * The blocks removed (and then appended again) by reorg().
+   */
+  private Block[] removed = new Block[REORG_DEPTH];
+
+  // +-------+-------------------------------------------------------
+  // | Setup |
+  // +-------+
+
+  /**
+   * Build the chain.
+   */
+  @Setup(Level.Trial)
+  public void setup() {
+    this.chain = ChainFixtures.build(this.length, this.users,
+        this.distribution, this.difficulty);
+    this.next = this.chain.mine(new Transaction("", ChainFixtures.name(0), 1));
+    this.user = ChainFixtures.name(this.users / 2);
+  } // setup()
+
+  // +------------+--------------------------------------------------
+  // | Benchmarks |
+  // +------------+
+
+  /**
+   * Append a block to the chain and remove it again.
+   *
+   * @return whether the block was removed.
+   */
+  @Benchmark
+  public boolean appendAndRemove() {
+    this.chain.append(this.next);
+    return this.chain.removeLast();
+  } // appendAndRemove()
+
+  /**
+   * Roll back the last blocks of the chain and append them again. This
+   * should take about as long for a long chain as for a short one.
+   *
+   * @return the size of the chain.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public int reorg() {
+    for (int i = REORG_DEPTH - 1; i >= 0; i--) {
+      this.removed[i] = this.chain.getBlockByNumber(this.chain.getSize() - 1);
+      this.chain.removeLast();
+    } // for
+    for (Block blk : this.removed) {
+      this.chain.append(blk);
+    } // for
+    return this.chain.getSize();
+  } // reorg()
+
+  /**
+   * Check every hash in the chain.
+   *
+   * @return whether the hashes are legal.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public boolean legalHash() throws NoSuchAlgorithmException {
+    return this.chain.legalHash();
+  } // legalHash()
+
+  /**
+   * Look up one user's balance.
+   *
+   * @return the balance.
+   */
+  @Benchmark
+  public long balance() {
+    return this.chain.balance(this.user);
+  } // balance()
+} // class ChainBenchmark
@@ -0,0 +1,107 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.util.Random;
+
+/**
+ * Chains and validators shared by the benchmarks.
+ *
+ * @author Sara Jaljaa
+ * @author Jenifer Silva
+ */
+final class ChainFixtures {
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The seed for generated transactions, so every run sees the same chain.
+   */
+  static final long SEED = 207;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Fixtures are not instantiated.
+   */
+  private ChainFixtures() {
+  } // ChainFixtures()
+
+  // +----------------+----------------------------------------------
+  // | Static Methods |
+  // +----------------+
+
+  /**
+   * Pick a user.
+   *
+   * @param random
+   *    The source of randomness.
+   * @param users
+   *    The number of users.
+   * @param distribution
+   *    Either "uniform" or "skewed" (a few users take part in most
+   *    transactions).
+   * @return
+   *    The index of the user.
+   */
+  static int pick(Random random, int users, String distribution) {
+    if ("skewed".equals(distribution)) {
+      double u = random.nextDouble();
+      return (int) (users * u * u * u);
+    } // if
+    return random.nextInt(users);
+  } // pick(Random, int, String)
+
+  /**
+   * Get the name of a user.
+   *
+   * @param user
+   *    The index of the user.
+   * @return
+   *    The user's name.
+   */
+  static String name(int user) {
+    return "user" + user;
+  } // name(int)
+
+  /**
+   * Build a chain of legal transactions. Users start with deposits; after
+   * that, blocks move small amounts between users chosen from the
+   * distribution, falling back to a deposit when the source is broke.
+   *
+   * @param length
+   *    The number of blocks, including the initial block.
+   * @param users
+   *    The number of users.
+   * @param distribution
+   *    How users are chosen (see pick).
+   * @param difficulty
+   *    The number of leading zero bits each block needs.
+   * @return
+   *    The chain.
+   */
+  static BlockChain build(int length, int users, String distribution,
+      int difficulty) {
+    BlockChain chain = new BlockChain(new DifficultyValidator(difficulty));
+    Random random = new Random(SEED);
+    long[] balances = new long[users];
+    for (int i = 1; i < length; i++) {
+      int target = pick(random, users, distribution);
+      int source = pick(random, users, distribution);
+      Transaction t;
+      if (i <= users || balances[source] == 0 || source == target) {
+        t = new Transaction("", name(target), 100);
+        balances[target] += 100;
+      } else {
+        int amount = 1 + random.nextInt((int) Math.min(balances[source], 50));
+        t = new Transaction(name(source), name(target), amount);
+        balances[source] -= amount;
+        balances[target] += amount;
+      } // if/else
+      chain.append(chain.mine(t));
+    } // for
+    return chain;
+  } // build(int, int, String, int)
+} // class ChainFixtures
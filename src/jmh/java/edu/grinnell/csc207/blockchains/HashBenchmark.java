@@ -0,0 +1,93 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for hashing single blocks. Mining is in MineBenchmark, since
+ * only it depends on the difficulty and thread count.
+ *
+ * @author Sara Jaljaa
+ * @author Jenifer Silva
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class HashBenchmark {
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The transaction in every block.
+   */
+  private Transaction transaction;
+
+  /**
+   * The previous hash of every block.
+   */
+  private Hash prevHash;
+
+  /**
+   * A hasher reused across nonces.
+   */
+  private BlockHasher hasher;
+
+  /**
+   * The next nonce to try.
+   */
+  private long counter;
+
+  // +-------+-------------------------------------------------------
+  // | Setup |
+  // +-------+
+
+  /**
+   * Set up the block contents.
+   */
+  @Setup
+  public void setup() {
+    this.transaction = new Transaction("Source", "Target", 207);
+    this.prevHash = new Hash(new byte[BlockHasher.DIGEST_BYTES]);
+    this.hasher = new BlockHasher();
+    this.hasher.reset(1, this.transaction, this.prevHash);
+  } // setup()
+
+  // +------------+--------------------------------------------------
+  // | Benchmarks |
+  // +------------+
+
+  /**
+   * Compute a block's hash from scratch.
+   *
+   * @return the hash.
+   */
+  @Benchmark
+  public Hash computeHash() throws NoSuchAlgorithmException {
+    return Block.computeHash(1, this.transaction, this.prevHash, this.counter++);
+  } // computeHash()
+
+  /**
+   * Hash one more nonce of a block whose prefix is already hashed.
+   *
+   * @return the hash.
+   */
+  @Benchmark
+  public Hash hashNonce() {
+    return this.hasher.hash(this.counter++);
+  } // hashNonce()
+} // class HashBenchmark
@@ -0,0 +1,114 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for mining single blocks, by difficulty and thread count.
+ *
+ * @author Sara Jaljaa
+ * @author Jenifer Silva
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class MineBenchmark {
+
+  // +------------+--------------------------------------------------
+  // | Parameters |
+  // +------------+
+
+  /**
+   * The number of leading zero bits a mined block needs.
+   */
+  @Param({"8", "12", "16"})
+  public int difficulty;
+
+  /**
+   * The number of mining threads.
+   */
+  @Param({"1", "4"})
+  public int threads;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The transaction in every block.
+   */
+  private Transaction transaction;
+
+  /**
+   * The previous hash of every block.
+   */
+  private Hash prevHash;
+
+  /**
+   * The validator for mined blocks.
+   */
+  private HashValidator validator;
+
+  /**
+   * The miner for mined blocks.
+   */
+  private Miner miner;
+
+  /**
+   * The next block number to mine.
+   */
+  private int counter;
+
+  // +-------+-------------------------------------------------------
+  // | Setup |
+  // +-------+
+
+  /**
+   * Set up the block contents and the miner.
+   */
+  @Setup
+  public void setup() {
+    this.transaction = new Transaction("Source", "Target", 207);
+    this.prevHash = new Hash(new byte[BlockHasher.DIGEST_BYTES]);
+    this.validator = new DifficultyValidator(this.difficulty);
+    this.miner = new Miner(this.threads);
+  } // setup()
+
+  /**
+   * Stop the miner's threads.
+   */
+  @TearDown
+  public void tearDown() {
+    this.miner.shutdown();
+  } // tearDown()
+
+  // +------------+--------------------------------------------------
+  // | Benchmarks |
+  // +------------+
+
+  /**
+   * Mine a fresh block.
+   *
+   * @return the nonce.
+   */
+  @Benchmark
+  public long mine() throws NoSuchAlgorithmException {
+    return Block.mine(this.counter++, this.transaction, this.prevHash,
+        this.validator, this.miner);
+  } // mine()
+} // class MineBenchmark
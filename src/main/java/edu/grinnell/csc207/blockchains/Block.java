@@ -1,11 +1,20 @@
 package edu.grinnell.csc207.blockchains;
 
 import java.nio.ByteBuffer;
-import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
 /**
- * Blocks to be stored in blockchains.
+ * Blocks to be stored in blockchains. A block holds one or more
+ * transactions. A block with one transaction hashes that transaction
+ * directly; a block with several hashes the Merkle root of its
+ * transactions instead, so its hash costs the same to mine no matter how
+ * many transactions it holds, and a client can check that a transaction
+ * is in the block with a short proof (see prove()).
+ *
+ * A block may also record the difficulty it was mined for and the time it
+ * was mined. A block that records either one hashes both, after the
+ * previous hash, so neither can be changed without mining the block
+ * again; a block that records neither hashes as blocks always have.
  *
  * @author Sara Jaljaa
  * @author Jenifer Silva
@@ -13,6 +22,16 @@ import java.security.NoSuchAlgorithmException;
  */
 public class Block {
 
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * One hasher per thread, reused for every hash that thread computes.
+   */
+  private static final ThreadLocal<BlockHasher> HASHERS =
+      ThreadLocal.withInitial(BlockHasher::new);
+
   // +--------+------------------------------------------------------
   // | Fields |
   // +--------+
@@ -23,24 +42,63 @@ public class Block {
   private int number;
 
   /**
-   * The source, target, and amount transacted.
+   * The transactions, in the order they apply (at least one).
    */
-  private Transaction transaction;
+  Transaction[] transactions;
 
   /**
-   * The hash value of the previous block.
+   * The hash value of the previous block. For a block read from a file,
+   * null until it is first decoded; volatile so readers on other threads
+   * see a decoded hash once it is set.
    */
-  private Hash prevHash;
+  private volatile Hash prevHash;
 
   /**
    * The nonce value of the block.
    */
-  private long nonce;
+  long nonce;
+
+  /**
+   * The hash value of the block. For a block read from a file, null until
+   * it is first decoded.
+   */
+  private volatile Hash hash;
 
   /**
-   * The hash value of the block.
+   * The difficulty (leading zero bits) the block was mined for, or 0 if
+   * none was recorded.
    */
-  private Hash hash;
+  private int difficulty;
+
+  /**
+   * When the block was mined (in milliseconds since the epoch), or 0 if
+   * no time was recorded.
+   */
+  private long timestamp;
+
+  /**
+   * The Merkle tree over the transactions (or null, until it is needed).
+   * Readers on several threads may need it at once, so it is built under
+   * the block's lock and published through this field.
+   */
+  private volatile MerkleTree tree;
+
+  /**
+   * For a block read from a file, the buffer holding its hashes (or null,
+   * once both are decoded and the block is detached). Readers must read it
+   * once, since the writer may detach the block at any time.
+   */
+  private volatile ByteBuffer stored;
+
+  /**
+   * Where the previous hash starts in the stored buffer; the hash follows.
+   */
+  private int storedOffset;
+
+  /**
+   * Whether a block read from a file has a previous hash.
+   */
+  private boolean storedPrev;
 
   // +--------------+------------------------------------------------
   // | Constructors |
@@ -49,7 +107,9 @@ public class Block {
   /**
    * Create a new block from the specified block number, transaction,
    * and previous hash, mining to choose a nonce that meets the requirements
-   * of the validator.
+   * of the validator. The block records no difficulty or time (chains
+   * that retarget mine through BlockChain.mine), so its hash is the same
+   * as that of new Block(num, transaction, prevHash, getNonce()).
    *
    * @param num
    *    The number of the block.
@@ -62,18 +122,43 @@ public class Block {
    */
   public Block(int num, Transaction transaction, Hash prevHash,
       HashValidator check) {
+    this(num, new Transaction[] {transaction}, prevHash, check);
+  } // Block(int, Transaction, Hash, HashValidator)
+
+  /**
+   * Create a new block of several transactions, mining to choose a nonce
+   * that meets the requirements of the validator.
+   *
+   * @param num
+   *    The number of the block.
+   * @param transactions
+   *    The transactions for the block, in the order they apply.
+   * @param prevHash
+   *    The hash of the previous block.
+   * @param check
+   *    The validator used to check the block.
+   *
+   * @throws IllegalArgumentException
+   *    If there are no transactions.
+   */
+  public Block(int num, Transaction[] transactions, Hash prevHash,
+      HashValidator check) {
     this.number = num;
-    this.transaction = transaction;
+    this.transactions = batch(transactions);
     this.prevHash = prevHash;
 
     /* Mine for a nonce value to find the block's hash. */
     try {
-      this.nonce = mine(num, transaction, prevHash, check);
-      this.hash = computeHash(num, transaction, prevHash, this.nonce);
+      if (this.transactions.length == 1) {
+        this.nonce = Miner.defaultMiner().mine(num, this.transactions[0], prevHash, check);
+      } else {
+        this.nonce = Miner.defaultMiner().mine(num, this.getMerkleRoot(), prevHash, check);
+      } // if/else
+      this.hash = this.computeHash();
     } catch (NoSuchAlgorithmException e) {
       return;
     } // try/catch
-  } // Block(int, Transaction, Hash, HashValidator)
+  } // Block(int, Transaction[], Hash, HashValidator)
 
   /**
    * Create a new block, computing the hash for the block.
@@ -88,25 +173,204 @@ public class Block {
    *    The nonce of the block.
    */
   public Block(int num, Transaction transaction, Hash prevHash, long nonce) {
+    this(num, transaction, prevHash, nonce, 0);
+  } // Block(int, Transaction, Hash, long)
+
+  /**
+   * Create a new block that records the difficulty it was mined for (but
+   * no time), computing the hash for the block.
+   *
+   * @param num
+   *    The number of the block.
+   * @param transaction
+   *    The transaction for the block.
+   * @param prevHash
+   *    The hash of the previous block.
+   * @param nonce
+   *    The nonce of the block.
+   * @param difficulty
+   *    The number of leading zero bits the block's hash needs.
+   */
+  public Block(int num, Transaction transaction, Hash prevHash, long nonce, int difficulty) {
+    this(num, new Transaction[] {transaction}, prevHash, nonce, difficulty);
+  } // Block(int, Transaction, Hash, long, int)
+
+  /**
+   * Create a new block of several transactions, computing the hash for
+   * the block. The block records no time.
+   *
+   * @param num
+   *    The number of the block.
+   * @param transactions
+   *    The transactions for the block, in the order they apply.
+   * @param prevHash
+   *    The hash of the previous block.
+   * @param nonce
+   *    The nonce of the block.
+   * @param difficulty
+   *    The number of leading zero bits the block's hash needs (or 0).
+   *
+   * @throws IllegalArgumentException
+   *    If there are no transactions.
+   */
+  public Block(int num, Transaction[] transactions, Hash prevHash, long nonce,
+      int difficulty) {
+    this(num, transactions, prevHash, nonce, difficulty, 0);
+  } // Block(int, Transaction[], Hash, long, int)
+
+  /**
+   * Create a new block of several transactions that records the
+   * difficulty it was mined for and when, computing the hash for the
+   * block.
+   *
+   * @param num
+   *    The number of the block.
+   * @param transactions
+   *    The transactions for the block, in the order they apply.
+   * @param prevHash
+   *    The hash of the previous block.
+   * @param nonce
+   *    The nonce of the block.
+   * @param difficulty
+   *    The number of leading zero bits the block's hash needs (or 0).
+   * @param timestamp
+   *    When the block was mined, in milliseconds since the epoch (or 0).
+   *
+   * @throws IllegalArgumentException
+   *    If there are no transactions.
+   */
+  public Block(int num, Transaction[] transactions, Hash prevHash, long nonce,
+      int difficulty, long timestamp) {
     this.number = num;
-    this.transaction = transaction;
+    this.transactions = batch(transactions);
     this.prevHash = prevHash;
     this.nonce = nonce;
+    this.difficulty = difficulty;
+    this.timestamp = timestamp;
 
     /* Find the block's hash value. */
     try {
-      this.hash = computeHash((num), transaction, prevHash, nonce);
+      this.hash = this.computeHash();
     } catch (NoSuchAlgorithmException e) {
       return;
     } // try/catch
-  } // Block(int, Transaction, Hash, long)
+  } // Block(int, Transaction[], Hash, long, int, long)
+
+  /**
+   * Create a block read from a file, whose hashes stay in the file's
+   * buffer until someone asks for them.
+   *
+   * @param num
+   *    The number of the block.
+   * @param transactions
+   *    The transactions for the block.
+   * @param nonce
+   *    The nonce of the block.
+   * @param difficulty
+   *    The difficulty the block was mined for (or 0).
+   * @param timestamp
+   *    When the block was mined (or 0).
+   * @param stored
+   *    The buffer holding the hashes.
+   * @param offset
+   *    Where the previous hash starts in the buffer; the block's own hash
+   *    follows it.
+   * @param hasPrev
+   *    Whether the block has a previous hash.
+   */
+  Block(int num, Transaction[] transactions, long nonce, int difficulty, long timestamp,
+      ByteBuffer stored, int offset, boolean hasPrev) {
+    this.number = num;
+    this.transactions = transactions;
+    this.nonce = nonce;
+    this.difficulty = difficulty;
+    this.timestamp = timestamp;
+    this.stored = stored;
+    this.storedOffset = offset;
+    this.storedPrev = hasPrev;
+  } // Block(int, Transaction[], long, int, long, ByteBuffer, int, boolean)
 
   // +---------+-----------------------------------------------------
   // | Helpers |
   // +---------+
 
   /**
-   * Mine for a nonce value.
+   * Copy the transactions for a new block, making sure there is at least
+   * one.
+   *
+   * @param transactions
+   *    The transactions.
+   * @return
+   *    A copy of the transactions.
+   *
+   * @throws IllegalArgumentException
+   *    If there are no transactions.
+   */
+  private static Transaction[] batch(Transaction[] transactions) {
+    if (transactions.length == 0) {
+      throw new IllegalArgumentException("a block needs at least one transaction");
+    } // if
+    return transactions.clone();
+  } // batch(Transaction[])
+
+  /**
+   * Compute the hash of this block from its contents, using the block's
+   * own Merkle tree when it has several transactions.
+   *
+   * @return
+   *    The block's computed hash value.
+   *
+   * @throws NoSuchAlgorithmException
+   *    When the hashing algorithm fails to be instantiated.
+   */
+  private Hash computeHash() throws NoSuchAlgorithmException {
+    BlockHasher hasher = HASHERS.get();
+    if (this.transactions.length == 1) {
+      hasher.reset(this.number, this.transactions[0], this.prevHash, this.difficulty,
+          this.timestamp);
+    } else {
+      hasher.reset(this.number, this.getMerkleRoot(), this.prevHash, this.difficulty,
+          this.timestamp);
+    } // if/else
+    return hasher.hash(this.nonce);
+  } // computeHash()
+
+  /**
+   * Get the Merkle tree over the transactions, building it if necessary.
+   *
+   * @return the tree.
+   */
+  private MerkleTree tree() {
+    MerkleTree result = this.tree;
+    if (result == null) {
+      synchronized (this) {
+        /* Another reader may have built it while we waited */
+        result = this.tree;
+        if (result == null) {
+          result = new MerkleTree(this.transactions);
+          this.tree = result;
+        } // if
+      } // synchronized
+    } // if
+    return result;
+  } // tree()
+
+  /**
+   * Read a stored hash.
+   *
+   * @param stored
+   *    The stored buffer.
+   * @param offset
+   *    Where the hash starts in the stored buffer.
+   * @return
+   *    The hash.
+   */
+  private static Hash readHash(ByteBuffer stored, int offset) {
+    return Hash.readFrom(stored, offset);
+  } // readHash(ByteBuffer, int)
+
+  /**
+   * Mine for a nonce value using the shared miner.
    *
    * @param num
    *    The number of the block.
@@ -124,18 +388,95 @@ public class Block {
    */
   protected static long mine(int num, Transaction transaction,
       Hash prevHash, HashValidator check) throws NoSuchAlgorithmException {
-    Hash hash = null;
-
-    /* Iterate through all possible long values to find the nonce. */
-    for (long nonce = 0; nonce < Long.MAX_VALUE; nonce++) {
-      hash = computeHash(num, transaction, prevHash, nonce);
-      if (check.isValid(hash)) {
-        return nonce;
-      } // if
-    } // for(nonce)
-    throw new NoSuchAlgorithmException();
+    return mine(num, transaction, prevHash, check, Miner.defaultMiner());
   } // mine(int, Transaction, Hash, HashValidator)
 
+  /**
+   * Mine for a nonce value, splitting the search across the miner's
+   * worker threads. The result is the lowest valid nonce.
+   *
+   * @param num
+   *    The number of the block.
+   * @param transaction
+   *    The transaction for the block.
+   * @param prevHash
+   *    The hash of the previous block.
+   * @param check
+   *    The validator used to check the block.
+   * @param miner
+   *    The miner that searches for the nonce.
+   * @return
+   *    The mined nonce value.
+   *
+   * @throws NoSuchAlgorithmException
+   *    When the hashing algorithm fails to be instantiated.
+   */
+  protected static long mine(int num, Transaction transaction,
+      Hash prevHash, HashValidator check, Miner miner)
+      throws NoSuchAlgorithmException {
+    return miner.mine(num, transaction, prevHash, check);
+  } // mine(int, Transaction, Hash, HashValidator, Miner)
+
+  /**
+   * Mine for a nonce value for a block of one or more transactions. The
+   * Merkle root of several transactions is computed once, before the
+   * search starts.
+   *
+   * @param num
+   *    The number of the block.
+   * @param transactions
+   *    The transactions for the block.
+   * @param prevHash
+   *    The hash of the previous block.
+   * @param check
+   *    The validator used to check the block.
+   * @param miner
+   *    The miner that searches for the nonce.
+   * @return
+   *    The mined nonce value.
+   *
+   * @throws NoSuchAlgorithmException
+   *    When the hashing algorithm fails to be instantiated.
+   */
+  protected static long mine(int num, Transaction[] transactions,
+      Hash prevHash, HashValidator check, Miner miner)
+      throws NoSuchAlgorithmException {
+    return mine(num, transactions, prevHash, 0, 0, check, miner);
+  } // mine(int, Transaction[], Hash, HashValidator, Miner)
+
+  /**
+   * Mine for a nonce value for a block of one or more transactions that
+   * records a difficulty and a timestamp.
+   *
+   * @param num
+   *    The number of the block.
+   * @param transactions
+   *    The transactions for the block.
+   * @param prevHash
+   *    The hash of the previous block.
+   * @param difficulty
+   *    The difficulty the block records (or 0).
+   * @param timestamp
+   *    The time the block records (or 0).
+   * @param check
+   *    The validator used to check the block.
+   * @param miner
+   *    The miner that searches for the nonce.
+   * @return
+   *    The mined nonce value.
+   *
+   * @throws NoSuchAlgorithmException
+   *    When the hashing algorithm fails to be instantiated.
+   */
+  static long mine(int num, Transaction[] transactions, Hash prevHash, int difficulty,
+      long timestamp, HashValidator check, Miner miner) throws NoSuchAlgorithmException {
+    if (transactions.length == 1) {
+      return miner.mine(num, transactions[0], prevHash, difficulty, timestamp, check);
+    } // if
+    return miner.mine(num, MerkleTree.root(transactions), prevHash, difficulty, timestamp,
+        check);
+  } // mine(int, Transaction[], Hash, int, long, HashValidator, Miner)
+
   /**
    * Compute the hash of the block given all the other info already stored
    * in the block.
@@ -156,27 +497,65 @@ public class Block {
    */
   static Hash computeHash(int number, Transaction transaction,
       Hash prevHash, long nonce) throws NoSuchAlgorithmException {
-    MessageDigest md = MessageDigest.getInstance("sha-256");
-
-    /* Update the block number's hash */
-    md.update(ByteBuffer.allocate(Integer.BYTES).putInt(number).array());
-
-    /* Update the transaction's hash */
-    md.update(transaction.getSource().getBytes());
-    md.update(transaction.getTarget().getBytes());
-    md.update(ByteBuffer.allocate(Integer.BYTES).putInt(transaction.getAmount()).array());
-
-    /* Update the previous block's hash (if it exists) */
-    if (prevHash != null) {
-      md.update(prevHash.getBytes());
-    } // if
+    BlockHasher hasher = HASHERS.get();
+    hasher.reset(number, transaction, prevHash);
+    return hasher.hash(nonce);
+  } // computeHash(int, Transaction, Hash, long)
 
-    /* Update the nonce's hash */
-    md.update(ByteBuffer.allocate(Long.BYTES).putLong(nonce).array());
+  /**
+   * Compute the hash of a block of one or more transactions.
+   *
+   * @param number
+   *    The number of the block.
+   * @param transactions
+   *    The transactions in the block.
+   * @param prevHash
+   *    The previous block's hash value (if it exists).
+   * @param nonce
+   *    The nonce value, unhashed.
+   * @return
+   *    The block's computed hash value.
+   *
+   * @throws NoSuchAlgorithmException
+   *    When the hashing algorithm fails to be instantiated.
+   */
+  static Hash computeHash(int number, Transaction[] transactions,
+      Hash prevHash, long nonce) throws NoSuchAlgorithmException {
+    return computeHash(number, transactions, prevHash, nonce, 0, 0);
+  } // computeHash(int, Transaction[], Hash, long)
 
-    /* Digest */
-    return new Hash(md.digest());
-  } // computeHash(int, Transaction, Hash, long)
+  /**
+   * Compute the hash of a block of one or more transactions that records
+   * a difficulty and a timestamp.
+   *
+   * @param number
+   *    The number of the block.
+   * @param transactions
+   *    The transactions in the block.
+   * @param prevHash
+   *    The previous block's hash value (if it exists).
+   * @param nonce
+   *    The nonce value, unhashed.
+   * @param difficulty
+   *    The difficulty the block records (or 0).
+   * @param timestamp
+   *    The time the block records (or 0).
+   * @return
+   *    The block's computed hash value.
+   *
+   * @throws NoSuchAlgorithmException
+   *    When the hashing algorithm fails to be instantiated.
+   */
+  static Hash computeHash(int number, Transaction[] transactions, Hash prevHash, long nonce,
+      int difficulty, long timestamp) throws NoSuchAlgorithmException {
+    BlockHasher hasher = HASHERS.get();
+    if (transactions.length == 1) {
+      hasher.reset(number, transactions[0], prevHash, difficulty, timestamp);
+    } else {
+      hasher.reset(number, MerkleTree.root(transactions), prevHash, difficulty, timestamp);
+    } // if/else
+    return hasher.hash(nonce);
+  } // computeHash(int, Transaction[], Hash, long, int, long)
 
   // +---------+-----------------------------------------------------
   // | Methods |
@@ -192,14 +571,77 @@ public class Block {
   } // getNum()
 
   /**
-   * Get the transaction stored in this block.
+   * Get the first (for most blocks, the only) transaction stored in this
+   * block.
    *
    * @return the transaction.
    */
   public Transaction getTransaction() {
-    return this.transaction;
+    return this.transactions[0];
   } // getTransaction()
 
+  /**
+   * Get one of the transactions stored in this block.
+   *
+   * @param i
+   *    The index of the transaction, between 0 (inclusive) and
+   *    getTransactionCount() (exclusive).
+   * @return the transaction.
+   *
+   * @throws IndexOutOfBoundsException
+   *    If i is not a valid index.
+   */
+  public Transaction getTransaction(int i) {
+    return this.transactions[i];
+  } // getTransaction(int)
+
+  /**
+   * Determine how many transactions are stored in this block.
+   *
+   * @return the number of transactions.
+   */
+  public int getTransactionCount() {
+    return this.transactions.length;
+  } // getTransactionCount()
+
+  /**
+   * Get the transactions stored in this block, in the order they apply.
+   *
+   * @return a copy of the transactions.
+   */
+  public Transaction[] getTransactions() {
+    return this.transactions.clone();
+  } // getTransactions()
+
+  /**
+   * Get the Merkle root of the transactions in this block. For a block of
+   * several transactions, the block's hash covers the root, so the root
+   * can be trusted as far as the hash is. (The hash of a block of one
+   * transaction covers the transaction itself.)
+   *
+   * @return the root.
+   */
+  public Hash getMerkleRoot() {
+    return this.tree().getRoot();
+  } // getMerkleRoot()
+
+  /**
+   * Build a proof that one of the transactions is in this block, to be
+   * checked against the block's Merkle root. The tree behind the proof is
+   * built once and kept with the block.
+   *
+   * @param i
+   *    The index of the transaction, between 0 (inclusive) and
+   *    getTransactionCount() (exclusive).
+   * @return the proof.
+   *
+   * @throws IndexOutOfBoundsException
+   *    If i is not a valid index.
+   */
+  public MerkleProof prove(int i) {
+    return this.tree().prove(i);
+  } // prove(int)
+
   /**
    * Get the nonce of this block.
    *
@@ -209,13 +651,40 @@ public class Block {
     return this.nonce;
   } // getNonce()
 
+  /**
+   * Get the difficulty this block was mined for.
+   *
+   * @return the number of leading zero bits the block's hash needs (or 0,
+   *    if no difficulty was recorded).
+   */
+  public int getDifficulty() {
+    return this.difficulty;
+  } // getDifficulty()
+
+  /**
+   * Get the time this block was mined.
+   *
+   * @return the time, in milliseconds since the epoch (or 0, if no time
+   *    was recorded).
+   */
+  public long getTimestamp() {
+    return this.timestamp;
+  } // getTimestamp()
+
   /**
    * Get the hash of the previous block.
    *
    * @return the hash of the previous block.
    */
   Hash getPrevHash() {
-    return this.prevHash;
+    Hash prev = this.prevHash;
+    if (prev == null && this.storedPrev) {
+      ByteBuffer buffer = this.stored;
+      /* A detached block decoded its hashes before letting go of the buffer */
+      prev = (buffer == null) ? this.prevHash : readHash(buffer, this.storedOffset);
+      this.prevHash = prev;
+    } // if
+    return prev;
   } // getPrevHash
 
   /**
@@ -224,9 +693,29 @@ public class Block {
    * @return the hash of the current block.
    */
   Hash getHash() {
-    return this.hash;
+    Hash result = this.hash;
+    if (result == null) {
+      ByteBuffer buffer = this.stored;
+      if (buffer == null) {
+        /* Either a mined block still being built or a block detached since the first read */
+        return this.hash;
+      } // if
+      result = readHash(buffer, this.storedOffset + BlockFile.HASH_BYTES);
+      this.hash = result;
+    } // if
+    return result;
   } // getHash
 
+  /**
+   * Decode any stored hashes and let go of the buffer that holds them, so
+   * the block stays usable after its record is cut from the file.
+   */
+  void detach() {
+    this.getPrevHash();
+    this.getHash();
+    this.stored = null;
+  } // detach()
+
   /**
    * Get a string representation of the block.
    *
@@ -237,16 +726,19 @@ public class Block {
     StringBuilder str = new StringBuilder();
 
     /* Start with block # */
-    str.append(String.format("Block %d (Transaction: ", this.number));
+    str.append(String.format("Block %d (%s: ", this.number,
+        (this.transactions.length == 1) ? "Transaction" : "Transactions"));
 
-    /* Format transaction */
-    str.append(this.getTransaction().toString());
+    /* Format transactions */
+    for (int i = 0; i < this.transactions.length; i++) {
+      str.append((i == 0) ? "" : ", ").append(this.transactions[i].toString());
+    } // for
 
     Hash prev = this.getPrevHash();
 
     /* Format hashes */
     str.append(String.format(" Nonce: %d, prevHash: %s, hash: %s)",
-        this.getNonce(), prev.toString(), this.getHash().toString()));
+        this.getNonce(), String.valueOf(prev), this.getHash().toString()));
     return str.toString();
   } // toString()
 } // class Block
@@ -1,53 +1,161 @@
 package edu.grinnell.csc207.blockchains;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
-import edu.grinnell.csc207.util.AssociativeArray;
-import edu.grinnell.csc207.util.KeyNotFoundException;
-import edu.grinnell.csc207.util.Node;
-import edu.grinnell.csc207.util.NullKeyException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import edu.grinnell.csc207.util.IntList;
+import edu.grinnell.csc207.util.Ledger;
+import edu.grinnell.csc207.util.PersistentLedger;
+import edu.grinnell.csc207.util.SegmentedList;
+import edu.grinnell.csc207.util.SegmentedIntList;
+import edu.grinnell.csc207.util.UserDictionary;
 import java.io.PrintWriter;
 
 /**
  * A full blockchain.
  *
+ * A chain has one writer: only one thread at a time may mine, append, remove, check, or look up
+ * blocks by hash or by user. Any number of other threads may read the chain while the writer
+ * works. After every change the writer publishes a read-only view of the chain (see snapshot()),
+ * and getSize(), getHash(), getBlockByNumber(), blocks(), iterator(), and the streams all read
+ * the latest published view, without locking. So do balance(), balanceAt(), and users(): the
+ * balances after each block are kept as immutable ledgers that share structure, so a view pins
+ * the balances of its height as well as its blocks.
+ *
  * @author Sara Jaljaa
  * @author Jenifer Silva
  * @author Samuel A. Rebelsky
  */
-public class BlockChain implements Iterable<Transaction> {
+public class BlockChain implements Iterable<Transaction>, AutoCloseable {
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The largest range of blocks whose hashes one task checks without splitting.
+   */
+  static final int VERIFY_THRESHOLD = 512;
+
+  /**
+   * The most transactions minePending() puts in a block, unless told otherwise.
+   */
+  public static final int DEFAULT_BLOCK_SIZE = 1024;
+
+  /**
+   * How far (in milliseconds) past this machine's clock an appended block's time may be, when
+   * retargeting. Without a bound, a miner could date the last block of each interval far in the
+   * future to make the interval look slow and so lower the difficulty.
+   */
+  public static final long MAX_DRIFT_MILLIS = 2 * 60 * 1000;
 
   // +--------+------------------------------------------------------
   // | Fields |
   // +--------+
 
   /**
-   * The first block in the chain.
+   * The blocks in the chain, indexed by block number.
    */
-  private Node<Block> start;
+  private SegmentedList<Block> store;
 
   /**
-   * The last block in the chain.
+   * The HashValidator to check the hashes (for continuity).
    */
-  private Node<Block> end;
+  private HashValidator validator;
 
   /**
-   * The HashValidator to check the hashes (for continuity).
+   * The users and their balances after each block, indexed by block number.
    */
-  private HashValidator validator;
+  private SegmentedList<PersistentLedger> balances;
+
+  /**
+   * The number of blocks (starting with the initial block) that have been verified.
+   */
+  private int verified;
+
+  /**
+   * The balances after the verified blocks.
+   */
+  private Ledger checkpoint;
+
+  /**
+   * How to undo each verified block's changes to the checkpoint.
+   */
+  private UndoLog checkpointUndo;
+
+  /**
+   * The miner used to search for nonces.
+   */
+  private Miner miner;
+
+  /**
+   * The file that holds the blocks (or null, if the chain is only in memory).
+   */
+  private BlockFile file;
+
+  /**
+   * The most recent blocks, indexed by hash (or null, until the first lookup by hash).
+   */
+  private HashIndex byHash;
+
+  /**
+   * The number of the oldest block in the hash index.
+   */
+  private int indexedFrom;
+
+  /**
+   * The most blocks the hash index may hold.
+   */
+  private int indexLimit = Integer.MAX_VALUE;
+
+  /**
+   * The positions (counting every transaction in the chain, starting from 0) of the transactions
+   * that involve each user, in increasing order, indexed by user id (null for users with no
+   * transactions). Ids come from the process-wide UserDictionary, so this grows with the number
+   * of names the whole process has seen, not just the users of this chain.
+   */
+  private IntList[] history;
+
+  /**
+   * For each block, the position just after its last transaction.
+   */
+  private SegmentedIntList txEnds;
+
+  /**
+   * The transactions waiting to be mined.
+   */
+  private Mempool mempool;
+
+  /**
+   * The most transactions minePending() puts in a block.
+   */
+  private int blockSize = DEFAULT_BLOCK_SIZE;
+
+  /**
+   * How the difficulty is adjusted (or null, if the validator never changes).
+   */
+  private RetargetPolicy retarget;
 
   /**
-   * The size of the chain.
+   * The number of leading zero bits the next block needs (when retargeting), as computed from
+   * the difficulties and timestamps of the blocks before it (see expectedDifficulty()).
    */
-  private int size;
+  private int difficulty;
 
   /**
-   * To store the users and their balance.
+   * The latest published view of the chain.
    */
-  private AssociativeArray<String, Integer> users;
+  private volatile ChainView tip;
 
   // +--------------+------------------------------------------------
   // | Constructors |
@@ -59,46 +167,397 @@ public class BlockChain implements Iterable<Transaction> {
    * @param check The validator used to check elements.
    */
   public BlockChain(HashValidator check) {
-    this.start = new Node<Block>(new Block(0, new Transaction("", "", 0), null, check));
-    this.end = this.start;
-    this.validator = check;
-    this.size = 1;
-    this.users = new AssociativeArray<>();
+    this(check, Miner.defaultMiner());
   } // BlockChain(HashValidator)
 
+  /**
+   * Create a new blockchain using a validator to check elements and a
+   * number of worker threads to mine blocks.
+   *
+   * @param check The validator used to check elements.
+   * @param threads The number of threads used to mine each block.
+   */
+  public BlockChain(HashValidator check, int threads) {
+    this(check, new Miner(threads));
+  } // BlockChain(HashValidator, int)
+
+  /**
+   * Create a new blockchain using a validator to check elements and a
+   * miner to mine blocks.
+   *
+   * @param check The validator used to check elements.
+   * @param miner The miner used to search for nonces.
+   */
+  public BlockChain(HashValidator check, Miner miner) {
+    this.init(check, null, miner, new Block[0]);
+  } // BlockChain(HashValidator, Miner)
+
+  /**
+   * Create a new blockchain whose difficulty (in leading zero bits) is adjusted by a policy as
+   * blocks are appended, so that blocks keep arriving at about the policy's target rate. Each
+   * block records its difficulty and the time it was mined, both covered by its hash, and the
+   * difficulty each block needs is computed from the times recorded in the blocks before it.
+   *
+   * @param policy How to adjust the difficulty.
+   * @param miner The miner used to search for nonces.
+   */
+  public BlockChain(RetargetPolicy policy, Miner miner) {
+    this.init(null, policy, miner, new Block[0]);
+  } // BlockChain(RetargetPolicy, Miner)
+
+  /**
+   * Open a blockchain stored in a file, creating the file (with a new initial block) if it does
+   * not exist. Blocks appended to or removed from the chain are appended to or removed from the
+   * file. Blocks loaded from the file are not verified until the next check.
+   *
+   * @param check The validator used to check elements.
+   * @param path The file that holds the blocks.
+   *
+   * @throws IOException If the file cannot be read or written.
+   */
+  public BlockChain(HashValidator check, Path path) throws IOException {
+    this(check, Miner.defaultMiner(), path);
+  } // BlockChain(HashValidator, Path)
+
+  /**
+   * Open a blockchain stored in a file, using a miner to mine blocks.
+   *
+   * @param check The validator used to check elements.
+   * @param miner The miner used to search for nonces.
+   * @param path The file that holds the blocks.
+   *
+   * @throws IOException If the file cannot be read or written.
+   */
+  public BlockChain(HashValidator check, Miner miner, Path path) throws IOException {
+    this(check, miner, new BlockFile(path));
+  } // BlockChain(HashValidator, Miner, Path)
+
+  /**
+   * Open a blockchain stored in an open block file. The file's group commit limits decide how
+   * soon appended blocks become durable. The chain takes over the file and closes it when the
+   * chain is closed.
+   *
+   * @param check The validator used to check elements.
+   * @param miner The miner used to search for nonces.
+   * @param file The file that holds the blocks.
+   *
+   * @throws IOException If the file cannot be written.
+   */
+  public BlockChain(HashValidator check, Miner miner, BlockFile file) throws IOException {
+    this(check, null, miner, file);
+  } // BlockChain(HashValidator, Miner, BlockFile)
+
+  /**
+   * Open a retargeting blockchain stored in an open block file. The difficulty picks up from the
+   * blocks in the file.
+   *
+   * @param policy How to adjust the difficulty.
+   * @param miner The miner used to search for nonces.
+   * @param file The file that holds the blocks.
+   *
+   * @throws IOException If the file cannot be written.
+   */
+  public BlockChain(RetargetPolicy policy, Miner miner, BlockFile file) throws IOException {
+    this(null, policy, miner, file);
+  } // BlockChain(RetargetPolicy, Miner, BlockFile)
+
+  /**
+   * Open a blockchain stored in an open block file, with either a fixed validator or a policy.
+   *
+   * @param check The validator used to check elements (ignored if there is a policy).
+   * @param policy How to adjust the difficulty (or null).
+   * @param miner The miner used to search for nonces.
+   * @param file The file that holds the blocks.
+   *
+   * @throws IOException If the file cannot be written.
+   */
+  private BlockChain(HashValidator check, RetargetPolicy policy, Miner miner, BlockFile file)
+      throws IOException {
+    this.file = file;
+    this.init(check, policy, miner, file.takeLoaded());
+    if (file.size() == 0) {
+      file.append(this.store.get(0));
+      file.sync();
+    } // if
+  } // BlockChain(HashValidator, RetargetPolicy, Miner, BlockFile)
+
   // +---------+-----------------------------------------------------
   // | Helpers |
   // +---------+
 
   /**
-   * Update/add a user to the blockchain.
+   * Set up the chain, starting from some existing blocks or, if there are none, from a newly
+   * mined initial block.
    *
-   * @param b The added block containing the transaction data.
+   * @param check The validator used to check elements (ignored if there is a policy).
+   * @param policy How to adjust the difficulty (or null).
+   * @param miner The miner used to search for nonces.
+   * @param blocks The existing blocks, starting with the initial block.
    */
-  private static void updateUser(AssociativeArray<String, Integer> users, Block b) {
-    Transaction receipt = b.getTransaction();
-    try {
-      if ("".equals(receipt.getSource())) {
-        users.set(receipt.getTarget(), receipt.getAmount());
-        return;
-      }
-      users.set(receipt.getSource(), receipt.getAmount());
-      users.set(receipt.getTarget(), receipt.getAmount());
-    } catch (KeyNotFoundException | NullKeyException e) {
-      return;
-    } // try/catch
-  } // updateUser(AssociativeArray<String, Integer>, Block)
+  private void init(HashValidator check, RetargetPolicy policy, Miner miner, Block[] blocks) {
+    this.miner = miner;
+    this.validator = check;
+    this.retarget = policy;
+    if (policy != null) {
+      this.difficulty = policy.getInitialBits();
+      this.validator = new DifficultyValidator(this.difficulty);
+    } // if
+    this.store = new SegmentedList<Block>();
+    this.balances = new SegmentedList<PersistentLedger>();
+    this.history = new IntList[16];
+    this.txEnds = new SegmentedIntList();
+    this.mempool = new Mempool();
+    this.verified = 1;
+    this.checkpoint = new Ledger();
+    this.checkpointUndo = new UndoLog();
+
+    if (blocks.length == 0) {
+      Transaction[] genesis = {new Transaction("", "", 0)};
+      long timestamp = (policy == null) ? 0 : System.currentTimeMillis();
+      long nonce;
+      try {
+        nonce = Block.mine(0, genesis, null, this.difficulty, timestamp, this.validator, miner);
+      } catch (NoSuchAlgorithmException e) {
+        nonce = 0;
+      } // try/catch
+      this.store.add(new Block(0, genesis, null, nonce, this.difficulty, timestamp));
+    } else {
+      this.store.add(blocks[0]);
+    } // if/else
+    this.txEnds.add(this.store.get(0).getTransactionCount());
+    this.balances.add(new PersistentLedger());
+    for (int i = 1; i < blocks.length; i++) {
+      this.store.add(blocks[i]);
+      this.balances.add(after(this.balances.getLast(), blocks[i]));
+      this.recordHistory(blocks[i]);
+    } // for
+    this.retargetAfter();
+    this.publish();
+  } // init(HashValidator, RetargetPolicy, Miner, Block[])
+
+  /**
+   * Publish a view of the chain as it stands, for readers. The view is written to a volatile
+   * field, so a reader that sees it also sees every block in it.
+   */
+  private void publish() {
+    this.tip = new ChainView(this.store.snapshot(), this.balances.snapshot(),
+        this.txEnds.snapshot());
+  } // publish()
+
+  /**
+   * Find the balances after a block. Only the parts of the ledger that the block changes are
+   * copied; the rest is shared with the balances before it, which do not change.
+   *
+   * @param before The balances before the block.
+   * @param b The block containing the transaction data.
+   * @return The balances after the block.
+   */
+  private static PersistentLedger after(PersistentLedger before, Block b) {
+    PersistentLedger.Builder users = before.builder();
+    for (Transaction receipt : b.transactions) {
+      if (!receipt.isDeposit()) {
+        users.add(receipt.getSourceId(), -receipt.getAmount());
+      } // if
+      users.add(receipt.getTargetId(), receipt.getAmount());
+    } // for
+    return users.build();
+  } // after(PersistentLedger, Block)
+
+  /**
+   * Apply a block's transactions to the balances, in order, as long as each is legal given the
+   * balances before it. If one is not, the block's changes are undone.
+   *
+   * @param undo Where to record the changes.
+   * @param users The balances to update.
+   * @param b The block containing the transaction data.
+   * @return True if every transaction was legal and false otherwise.
+   */
+  private static boolean updateUserIfLegal(UndoLog undo, Ledger users, Block b) {
+    undo.begin();
+    for (Transaction receipt : b.transactions) {
+      if (!legalTransaction(users, receipt)) {
+        undo.undo(users);
+        return false;
+      } // if
+      apply(undo, users, receipt);
+    } // for
+    return true;
+  } // updateUserIfLegal(UndoLog, Ledger, Block)
+
+  /**
+   * Apply one transaction to the balances, as part of the current undo group.
+   *
+   * @param undo Where to record the changes.
+   * @param users The balances to update.
+   * @param receipt The transaction.
+   */
+  private static void apply(UndoLog undo, Ledger users, Transaction receipt) {
+    if (!receipt.isDeposit()) {
+      undo.apply(users, receipt.getSourceId(), -receipt.getAmount());
+    } // if
+    undo.apply(users, receipt.getTargetId(), receipt.getAmount());
+  } // apply(UndoLog, Ledger, Transaction)
 
   /**
-   * Remove a user from the blockchain.
+   * Add a block's transactions to the transaction history of the users in them.
    *
-   * @param b The block to be removed containing the transaction data.
+   * @param blk The block.
    */
-  private static void removeUser(AssociativeArray<String, Integer> users, Block b) {
-    Transaction receipt = b.getTransaction();
-    users.remove(receipt.getSource());
-    users.remove(receipt.getTarget());
-  } // removeUser(AssociativeArray<String, Integer>, Block)
+  private void recordHistory(Block blk) {
+    int position = this.txEnds.getLast();
+    for (Transaction t : blk.transactions) {
+      if (!t.isDeposit()) {
+        this.historyFor(t.getSourceId()).add(position);
+      } // if
+      if (t.getTargetId() != t.getSourceId()) {
+        this.historyFor(t.getTargetId()).add(position);
+      } // if
+      position++;
+    } // for
+    this.txEnds.add(position);
+  } // recordHistory(Block)
+
+  /**
+   * Get one user's transaction history, creating it if necessary.
+   *
+   * @param user The user's id.
+   * @return The numbers of the blocks whose transactions involve the user.
+   */
+  private IntList historyFor(int user) {
+    if (user >= this.history.length) {
+      this.history = Arrays.copyOf(this.history, Math.max(user + 1, 2 * this.history.length));
+    } // if
+    if (this.history[user] == null) {
+      this.history[user] = new IntList();
+    } // if
+    return this.history[user];
+  } // historyFor(int)
+
+  /**
+   * Remove the last block's transactions from the transaction history of the users in them.
+   *
+   * @param blk The block, which must be the last block recorded.
+   */
+  private void forgetHistory(Block blk) {
+    for (Transaction t : blk.transactions) {
+      if (!t.isDeposit()) {
+        this.history[t.getSourceId()].removeLast();
+      } // if
+      if (t.getTargetId() != t.getSourceId()) {
+        this.history[t.getTargetId()].removeLast();
+      } // if
+    } // for
+    this.txEnds.removeLast();
+  } // forgetHistory(Block)
+
+  /**
+   * Get one user's transaction history.
+   *
+   * @param user The user's name.
+   * @return The numbers of the blocks whose transactions involve the user (or null, if there are
+   *         none).
+   */
+  private IntList historyFor(String user) {
+    int id = UserDictionary.global().idOf(user);
+    return (id < 0 || id >= this.history.length) ? null : this.history[id];
+  } // historyFor(String)
+
+  /**
+   * Determine if a transaction is legal given the balances before it: the amount is not negative
+   * and, unless it is a deposit, the source has at least that much.
+   *
+   * @param users The balances before the transaction.
+   * @param t The transaction.
+   * @return True if the transaction is legal and false otherwise.
+   */
+  private static boolean legalTransaction(Ledger users, Transaction t) {
+    int src = t.getSourceId();
+    int amt = t.getAmount();
+    return (amt >= 0)
+        && (t.isDeposit() || (users.hasKey(src) && users.get(src) >= amt));
+  } // legalTransaction(Ledger, Transaction)
+
+  /**
+   * Check that one block has the correct previous hash, calculated hash, and is true for the
+   * validator.
+   *
+   * @param number The number of the block (at least 1).
+   * @return True or false if the hash values are legal for the block.
+   * @throws NoSuchAlgorithmException When the hashing algorithm fails to be instantiated.
+   */
+  private boolean legalHash(int number) throws NoSuchAlgorithmException {
+    Block previous = this.store.get(number - 1);
+    Block current = this.store.get(number);
+    Hash correctValueHash = Block.computeHash(current.getNum(), current.transactions,
+        current.getPrevHash(), current.getNonce(), current.getDifficulty(),
+        current.getTimestamp());
+    return this.validHash(current, current.getHash())
+        && previous.getHash().equals(current.getPrevHash())
+        && correctValueHash.equals(current.getHash())
+        && (this.retarget == null
+            || (current.getDifficulty() == this.expectedDifficulty(number)
+                && current.getTimestamp() >= previous.getTimestamp()));
+  } // legalHash(int)
+
+  /**
+   * Determine if a block's hash is hard enough to find. With a fixed validator, that is up to
+   * the validator; when retargeting, the hash needs the difficulty recorded in the block, which
+   * may not be below the policy's minimum.
+   *
+   * @param blk The block.
+   * @param hash The block's hash.
+   * @return True if the hash is valid and false otherwise.
+   */
+  private boolean validHash(Block blk, Hash hash) {
+    if (this.retarget == null) {
+      return this.validator.isValid(hash);
+    } // if
+    return blk.getDifficulty() >= this.retarget.getMinBits()
+        && DifficultyValidator.leadingZeroBits(hash) >= blk.getDifficulty();
+  } // validHash(Block, Hash)
+
+  /**
+   * Compute the difficulty a block needs on a retargeting chain. A block that follows the end of
+   * an adjustment interval gets the difficulty the policy picks from the time between the
+   * timestamps of the blocks that end this interval and the one before it; any other block keeps
+   * the difficulty of the block before it. Only recorded values are used, so the result is the
+   * same whenever (and on whichever thread) it is computed.
+   *
+   * @param number The number of the block (at least 1, and at most the size of the chain).
+   * @return The number of leading zero bits the block needs.
+   */
+  private int expectedDifficulty(int number) {
+    Block previous = this.store.get(number - 1);
+    if (this.retarget.adjustsAfter(number - 1)) {
+      Block start = this.store.get(number - 1 - this.retarget.getInterval());
+      return this.retarget.retarget(previous.getDifficulty(),
+          (previous.getTimestamp() - start.getTimestamp()) * 1_000_000L);
+    } // if
+    return Math.max(this.retarget.getMinBits(), previous.getDifficulty());
+  } // expectedDifficulty(int)
+
+  /**
+   * Recompute the difficulty of the next block after the end of the chain changes.
+   */
+  private void retargetAfter() {
+    if (this.retarget != null) {
+      this.difficulty = this.expectedDifficulty(this.store.size());
+      this.validator = new DifficultyValidator(this.difficulty);
+    } // if
+  } // retargetAfter()
+
+  /**
+   * Choose the time to record in the next block: now or, if the clock has gone back since the
+   * last block, the last block's time, so that times never decrease along the chain.
+   *
+   * @return The time, or 0 if the chain uses a fixed validator (and so records no times).
+   */
+  private long nextTimestamp() {
+    if (this.retarget == null) {
+      return 0;
+    } // if
+    return Math.max(System.currentTimeMillis(), this.store.getLast().getTimestamp());
+  } // nextTimestamp()
 
   /**
    * Format strings given some iterator (mainly a helper for the UI later & personal testing).
@@ -129,16 +588,122 @@ public class BlockChain implements Iterable<Transaction> {
    */
   public Block mine(Transaction t) {
     /* Find the next number for the block & the previous block's hash */
-    Hash prevHash = this.end.data.getHash();
+    int num = this.store.size();
+    Hash prevHash = this.getHash();
 
     /* Mine for the nonce */
+    return this.mine(num, new Transaction[] {t}, prevHash);
+  } // mine(Transaction)
+
+  /**
+   * Mine for a new valid block of several transactions for the end of the chain, returning that
+   * block. The block is not appended.
+   *
+   * @param transactions The transactions that go in the block, in the order they apply.
+   * @return A new block with correct number, hashes, and such.
+   *
+   * @throws IllegalArgumentException If there are no transactions.
+   */
+  public Block mine(Transaction[] transactions) {
+    if (transactions.length == 0) {
+      throw new IllegalArgumentException("a block needs at least one transaction");
+    } // if
+    return this.mine(this.store.size(), transactions, this.getHash());
+  } // mine(Transaction[])
+
+  /**
+   * Mine a block for the end of the chain, at the current difficulty and time.
+   *
+   * @param num The number of the block.
+   * @param transactions The transactions that go in the block, at least one.
+   * @param prevHash The hash of the last block in the chain.
+   * @return The block, or null if mining fails.
+   */
+  private Block mine(int num, Transaction[] transactions, Hash prevHash) {
+    long timestamp = this.nextTimestamp();
     try {
-      long nonce = Block.mine(this.size, t, prevHash, this.validator);
-      return new Block(this.size, t, prevHash, nonce);
+      long nonce = Block.mine(num, transactions, prevHash, this.difficulty, timestamp,
+          this.validator, this.miner);
+      return new Block(num, transactions, prevHash, nonce, this.difficulty, timestamp);
     } catch (Exception e) {
       return null;
     } // try/catch
-  } // mine(Transaction)
+  } // mine(int, Transaction[], Hash)
+
+  /**
+   * Get the pool of transactions waiting to be mined. Add transactions to it, from any thread,
+   * and call minePending() to mine them in batches.
+   *
+   * @return The pool.
+   */
+  public Mempool getMempool() {
+    return this.mempool;
+  } // getMempool()
+
+  /**
+   * Set the most transactions minePending() puts in a block.
+   *
+   * @param size The number of transactions.
+   *
+   * @throws IllegalArgumentException If size is less than 1.
+   */
+  public void setBlockSize(int size) {
+    if (size < 1) {
+      throw new IllegalArgumentException("blocks hold at least one transaction");
+    } // if
+    this.blockSize = size;
+  } // setBlockSize(int)
+
+  /**
+   * Get the most transactions minePending() puts in a block.
+   *
+   * @return The number of transactions.
+   */
+  public int getBlockSize() {
+    return this.blockSize;
+  } // getBlockSize()
+
+  /**
+   * Mine one block of waiting transactions and append it. The oldest waiting transactions go
+   * in the block, up to the block size, skipping any whose source could not afford them after
+   * the transactions before them; those stay in the pool.
+   *
+   * @return The new block, or null if no waiting transaction can be mined now.
+   */
+  public Block minePending() {
+    PersistentLedger users = this.balances.getLast();
+    Ledger changes = new Ledger();
+    Transaction[] batch = this.mempool.take(this.blockSize, (t) -> {
+      if (!t.isDeposit()) {
+        int src = t.getSourceId();
+        if (users.get(src) + changes.get(src) < t.getAmount()) {
+          return false;
+        } // if
+        changes.add(src, -t.getAmount());
+      } // if
+      changes.add(t.getTargetId(), t.getAmount());
+      return true;
+    });
+    if (batch.length == 0) {
+      return null;
+    } // if
+    Block blk = this.mine(batch);
+    if (blk == null) {
+      this.mempool.restore(batch);
+      return null;
+    } // if
+    this.append(blk);
+    return blk;
+  } // minePending()
+
+  /**
+   * Get the number of leading zero bits the next block needs, when the chain is retargeting.
+   *
+   * @return The difficulty, or 0 if the chain uses a fixed validator.
+   */
+  public int getDifficulty() {
+    return this.difficulty;
+  } // getDifficulty()
 
   /**
    * Get the number of blocks currently in the chain.
@@ -146,16 +711,84 @@ public class BlockChain implements Iterable<Transaction> {
    * @return The number of blocks in the chain, including the initial block.
    */
   public int getSize() {
-    return this.size;
+    return this.tip.getSize();
   } // getSize()
 
   /**
-   * Add a block to the end of the chain.
+   * Get a block by its number.
+   *
+   * @param number The number of the block, between 0 (inclusive) and getSize() (exclusive).
+   * @return The block.
+   *
+   * @throws IndexOutOfBoundsException If there is no block with that number.
+   */
+  public Block getBlockByNumber(int number) {
+    return this.tip.getBlockByNumber(number);
+  } // getBlockByNumber(int)
+
+  /**
+   * Get a read-only view of the chain as of the last change. The view never changes, even as
+   * blocks are appended to or removed from the chain, so a reader can use it (from any thread)
+   * to see a consistent chain of a fixed height.
+   *
+   * @return The view.
+   */
+  public ChainView snapshot() {
+    return this.tip;
+  } // snapshot()
+
+  /**
+   * Get a block by its hash. The first lookup builds an index of the blocks by hash; after that,
+   * lookups take constant time for indexed blocks. Blocks too old to be in the index (see
+   * setHashIndexLimit) are found by searching backwards from the oldest indexed block.
+   *
+   * @param hash The hash of the block.
+   * @return The block, or null if no block in the chain has that hash.
+   */
+  public Block getBlockByHash(Hash hash) {
+    if (this.byHash == null) {
+      this.byHash = new HashIndex();
+      this.indexedFrom = Math.max(0, this.store.size() - this.indexLimit);
+      for (int i = this.indexedFrom; i < this.store.size(); i++) {
+        this.byHash.add(this.store.get(i));
+      } // for
+    } // if
+    Block blk = this.byHash.get(hash);
+    for (int i = this.indexedFrom - 1; blk == null && i >= 0; i--) {
+      if (this.store.get(i).getHash().equals(hash)) {
+        blk = this.store.get(i);
+      } // if
+    } // for
+    return blk;
+  } // getBlockByHash(Hash)
+
+  /**
+   * Limit the hash index to the most recent blocks, so that it takes bounded memory on a very
+   * long chain. Older blocks can still be found by hash, but more slowly.
+   *
+   * @param limit The most blocks the index may hold.
+   *
+   * @throws IllegalArgumentException If limit is less than 1.
+   */
+  public void setHashIndexLimit(int limit) {
+    if (limit < 1) {
+      throw new IllegalArgumentException("the hash index must hold at least one block");
+    } // if
+    this.indexLimit = limit;
+    this.byHash = null;
+  } // setHashIndexLimit(int)
+
+  /**
+   * Add a block to the end of the chain. This is where a block's hashes are
+   * validated; its transaction is applied to the balances right away, so
+   * later balance queries need not revisit the block.
    *
    * @param blk The block to add to the end of the chain.
    *
    * @throws IllegalArgumentException If (a) the hash is not valid, (b) the hash is not appropriate
-   *         for the contents, or (c) the previous hash is incorrect.
+   *         for the contents, (c) the previous hash is incorrect, or (d) the chain is retargeting
+   *         and the block does not record the current difficulty or records a time before the
+   *         last block's or more than MAX_DRIFT_MILLIS past the current time.
    */
   public void append(Block blk) {
     /* The re-computed hash of the block (validity check) */
@@ -163,218 +796,206 @@ public class BlockChain implements Iterable<Transaction> {
 
     /* The values associated with the block */
     int num = blk.getNum();
-    Transaction t = blk.getTransaction();
     Hash prev = blk.getPrevHash();
     long nonce = blk.getNonce();
 
     /* Re-compute the hash value */
     try {
-      hash = Block.computeHash(num, t, prev, nonce);
+      hash = Block.computeHash(num, blk.transactions, prev, nonce, blk.getDifficulty(),
+          blk.getTimestamp());
     } catch (NoSuchAlgorithmException e) {
       return;
     } // try/catch
 
     /* Check if the hash is a valid hash */
-    if (!this.validator.isValid(prev) || !hash.equals(blk.getHash())
-        || !this.end.data.getHash().equals(prev)) {
+    if (!this.validHash(blk, hash) || !hash.equals(blk.getHash())
+        || !this.getHash().equals(prev)
+        || (this.retarget != null && (blk.getDifficulty() != this.difficulty
+            || blk.getTimestamp() < this.store.getLast().getTimestamp()
+            || blk.getTimestamp() > System.currentTimeMillis() + MAX_DRIFT_MILLIS))) {
       throw new IllegalArgumentException();
     } // if
 
-    /* Add the block to the end, adjust previous block */
-    this.end.insert(blk);
-    this.end = this.end.next;
+    /* Add the block to the end (of the file, too) */
+    if (this.file != null) {
+      try {
+        this.file.append(blk);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      } // try/catch
+    } // if
+    this.store.add(blk);
+    if (this.byHash != null) {
+      this.byHash.add(blk);
+      if (this.store.size() - this.indexedFrom > this.indexLimit) {
+        this.byHash.remove(this.store.get(this.indexedFrom++));
+      } // if
+    } // if
 
     /* Update the list of users */
-    updateUser(this.users, blk);
-    size++;
+    this.balances.add(after(this.balances.getLast(), blk));
+    this.recordHistory(blk);
+    this.retargetAfter();
+    this.publish();
   } // append(Block)
 
   /**
-   * Attempt to remove the last block from the chain.
+   * Attempt to remove the last block from the chain, restoring the balances
+   * from before it was appended.
    *
    * @return False if the chain has only one block (in which case it's not removed) or true
    *         otherwise (in which case the last block is removed).
    */
   public boolean removeLast() {
-    if (this.size <= 1) {
+    if (this.store.size() <= 1) {
       return false;
     } // if
-
-    /* The node position and the previous node's position */
-    Node<Block> node = this.start;
-    Node<Block> prev = null;
-
-    /*
-     * Loop through the nodes; if the node is equal to the second to last element, then: - Set the
-     * end element to null (delete the node) - Set the second to last element equal to the previous
-     * element (move it back) - Set the end to the new terminating node (move it back)
-     */
-    while (node != null) {
-      if (node.data.equals(this.end.data)) {
-        removeUser(this.users, this.end.data);
-        this.end = prev;
-        this.end.next = null;
-        size--;
-        break;
+    if (this.file != null) {
+      this.store.getLast().detach();
+      try {
+        this.file.removeLast();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      } // try/catch
+    } // if
+    Block removed = this.store.removeLast();
+    this.balances.removeLast();
+    this.forgetHistory(removed);
+    this.retargetAfter();
+    if (this.byHash != null) {
+      this.byHash.remove(removed);
+      if (this.indexedFrom > 0) {
+        this.byHash.add(this.store.get(--this.indexedFrom));
       } // if
-      prev = node;
-      node = node.next;
-    } // while
+    } // if
+
+    /* Move the checkpoint back if it included the removed block */
+    if (this.verified > this.store.size()) {
+      this.checkpointUndo.undo(this.checkpoint);
+      this.verified--;
+    } // if
+    this.publish();
     return true;
   } // removeLast()
 
+  /**
+   * Make every block appended so far durable, without waiting for its group to be committed.
+   * Does nothing for a chain that is only in memory.
+   *
+   * @throws IOException If the blocks cannot be written.
+   */
+  public void sync() throws IOException {
+    if (this.file != null) {
+      this.file.sync();
+    } // if
+  } // sync()
+
+  /**
+   * Commit any remaining blocks and close the chain's file. The chain may not be changed
+   * afterwards.
+   *
+   * @throws IOException If the blocks cannot be written.
+   */
+  @Override
+  public void close() throws IOException {
+    if (this.file != null) {
+      this.file.close();
+    } // if
+  } // close()
+
   /**
    * Get the hash of the last block in the chain.
    *
    * @return The hash of the last block in the chain.
    */
   public Hash getHash() {
-    return this.end.data.getHash();
+    return this.tip.getHash();
   } // getHash()
 
   /**
    * Determine if the blockchain is correct in that (a) the balances are legal/correct at every
    * step, (b) that every block has a correct previous hash field, (c) that every block has a hash
-   * that is correct for its contents, and (d) that every block has a valid hash.
+   * that is correct for its contents, and (d) that every block has a valid hash. Only the blocks
+   * appended since the last successful check are examined; blocks before that point are trusted
+   * (see fullRevalidate()).
    *
    * @return True if the blockchain is correct and false otherwise.
    */
   public boolean isCorrect() throws Exception {
-    return (legalTransaction() && legalHash());
+    int badHash = firstIllegalHash(this.verified, this.store.size());
+    int end = (badHash < 0) ? this.store.size() : badHash;
+    while (this.verified < end) {
+      Block blk = this.store.get(this.verified);
+      if (!updateUserIfLegal(this.checkpointUndo, this.checkpoint, blk)) {
+        return false;
+      } // if
+      this.verified++;
+    } // while
+    return badHash < 0;
   } // isCorrect()
 
   /**
-   * Checks for legal transactions between users.
+   * Checks for legal transactions between users, replaying the whole chain.
    * 
    * @return True or false if the transaction is not negative.
-   *
-   * @throws KeyNotFoundException If the source or target cannot be found in the users.
-   * @throws NullKeyException If the source or target is null.
    */
-  private boolean legalTransaction() throws KeyNotFoundException, NullKeyException {
-    AssociativeArray<String, Integer> users = new AssociativeArray<>();
+  private boolean legalTransaction() {
+    Ledger users = new Ledger();
     Iterator<Transaction> itCorrect = BlockChain.this.iterator();
 
     Transaction t;
-    int balance;
-    String src;
-    String tgt;
-    int amt;
 
     while (itCorrect.hasNext()) {
       t = itCorrect.next();
-      src = t.getSource();
-      tgt = t.getTarget();
-      amt = t.getAmount();
-      balance = amt;
-
-      if (balance < 0) {
+      if (!legalTransaction(users, t)) {
         return false;
       } // if
-
-      if ("".equals(src)) {
-        if (users.hasKey(tgt)) {
-          balance = users.get(tgt);
-          balance = balance + amt;
-        } // if
-        if (balance < 0) {
-          return false;
-        } // if
-        users.set(tgt, amt);
-      } else {
-        if (users.hasKey(src)) {
-          balance = users.get(src);
-          balance = balance - amt;
-        } else {
-          return false;
-        } // elif
-        if (balance < 0) {
-          return false;
-        } // if
-        users.set(src, amt);
-      } // elif
-      if (users.hasKey(tgt)) {
-        balance = users.get(tgt);
-        balance = balance + amt;
-      } // if
-      if (balance < 0) {
-        return false;
+      if (!t.isDeposit()) {
+        users.add(t.getSourceId(), -t.getAmount());
       } // if
-      users.set(tgt, balance);
+      users.add(t.getTargetId(), t.getAmount());
     } // while
     return true;
   } // legalTransaction()
 
-  public void update() {
-    Iterator<Transaction> itCorrect = BlockChain.this.iterator();
-
-    Transaction t;
-    int balance;
-    String src;
-    String tgt;
-    int amt;
-
-
-      t = itCorrect.next();
-      src = t.getSource();
-      tgt = t.getTarget();
-      amt = t.getAmount();
-      balance = amt;
-
-      try {
-        if ("".equals(src)) {
-          if (this.users.hasKey(tgt)) {
-            balance = this.users.get(tgt) + amt;
-            this.users.set(tgt, balance);
-            return;
-          } // if
-        } else {
-          if (this.users.hasKey(src)) {
-            balance = this.users.get(src);
-            balance = balance - amt;
-            this.users.set(src, balance);
-            if (!this.users.hasKey(src)) {
-            this.users.set(src, 0);
-          }
-        }
-          if (this.users.hasKey(tgt)) {
-            balance = this.users.get(tgt);
-            balance = balance + amt;
-            this.users.set(tgt, balance);
-          }
-        }
-      } catch (Exception e) {
-        return;
-       // try/catch
-    } // while
-  } // update()
-
   /**
-   * Check that a block has the correct previous hash, calculated hash, and is true for the
+   * Check that every block has the correct previous hash, calculated hash, and is true for the
    * validator.
    * 
    * @return True or false if the hash values are legal for a block.
    * @throws NoSuchAlgorithmException When the hashing algorithm fails to be instantiated.
    */
   public boolean legalHash() throws NoSuchAlgorithmException {
-    Node<Block> current = this.start;
-    Node<Block> previous = null;
-    Hash correctValueHash;
-
-    while (current.next != null) {
-      previous = current;
-      current = current.next;
-      correctValueHash = Block.computeHash(current.data.getNum(), current.data.getTransaction(),
-          current.data.getPrevHash(), current.data.getNonce());
-      if (!(this.validator.isValid(previous.data.getHash()))
-          || (!previous.data.getHash().equals(current.data.getPrevHash()))
-          || !(correctValueHash.equals(current.data.getHash()))) {
-        return false;
-      } // if
-    } // while
-    return true;
+    return firstIllegalHash() < 0;
   } // legalHash()
 
+  /**
+   * Find the first block whose previous hash, calculated hash, or validity is wrong. Large chains
+   * are split into ranges that are checked in parallel, so the validator must be safe to call from
+   * several threads at once.
+   *
+   * @return The number of the first block with an illegal hash, or -1 if every hash is legal.
+   */
+  public int firstIllegalHash() {
+    return firstIllegalHash(1, this.store.size());
+  } // firstIllegalHash()
+
+  /**
+   * Find the first block in a range whose hashes are illegal, checking the range in parallel if it
+   * is large.
+   *
+   * @param from The number of the first block to check (at least 1).
+   * @param to The number just past the last block to check.
+   * @return The number of the first block with an illegal hash, or -1 if there is none.
+   */
+  private int firstIllegalHash(int from, int to) {
+    HashCheck task = new HashCheck(from, to, new AtomicInteger(Integer.MAX_VALUE));
+    int first = (to - from <= VERIFY_THRESHOLD)
+        ? task.compute()
+        : ForkJoinPool.commonPool().invoke(task);
+    return (first == Integer.MAX_VALUE) ? -1 : first;
+  } // firstIllegalHash(int, int)
+
   /**
    * Determine if the blockchain is correct in that (a) the balances are legal/correct at every
    * step, (b) that every block has a correct previous hash field, (c) that every block has a hash
@@ -389,102 +1010,263 @@ public class BlockChain implements Iterable<Transaction> {
     return;
   } // check()
 
+  /**
+   * Determine if the blockchain is correct, as check() does, but re-examine every block from the
+   * initial block on, including blocks that earlier checks already verified. Use this for audits.
+   *
+   * @throws Exception If things are wrong at any block.
+   */
+  public void fullRevalidate() throws Exception {
+    if (!(legalTransaction() && legalHash())) {
+      throw new Exception();
+    } // if
+  } // fullRevalidate()
+
   /**
    * Return an iterator of all the people who participated in the system.
    *
    * @return An iterator of all the people in the system.
    */
   public Iterator<String> users() {
-    return new Iterator<String>() {
-      private AssociativeArray<String, Integer> users = BlockChain.this.users;
-      private final int MAX_SIZE = users.size();
-      private int count = 0;
-
-      /* Check for next user */
-      @Override
-      public boolean hasNext() {
-        return count < MAX_SIZE;
-      } // hasNext()
-
-      /* Get the next user */
-      @Override
-      public String next() {
-        if (!this.hasNext()) {
-          throw new NoSuchElementException();
-        } // if (!hasNext())
-        String user = users.getKey(count++);
-        return user;
-      } // next()
-    };
+    return this.tip.users();
   } // users()
 
   /**
-   * Find one user's balance.
+   * Find one user's balance, as of the blocks appended so far. This is a
+   * constant-time lookup that does not revalidate the chain; call check()
+   * or fullRevalidate() for that.
    *
    * @param user The user whose balance we want to find.
    * @return That user's balance (or 0, if the user is not in the system).
    */
-  public int balance(String user) {
-    // updateBalance(user, null);
-    try{
-    isCorrect();
-    return users.get(user);
-    }catch(Exception e){
-      return 0;
-    }
+  public long balance(String user) {
+    return this.tip.balance(user);
   } // balance()
 
   /**
-   * Get an iterator for all the blocks in the chain.
+   * Find one user's balance just after a given block, without replaying the chain.
    *
-   * @return An iterator for all the blocks in the chain.
+   * @param user The user whose balance we want to find.
+   * @param number The number of the block, between 0 (inclusive) and getSize() (exclusive).
+   * @return That user's balance after the block (or 0, if the user was not yet in the system).
+   *
+   * @throws IndexOutOfBoundsException If there is no block with that number.
    */
-  public Iterator<Block> blocks() {
-    return new Iterator<Block>() {
-      private Node<Block> block = BlockChain.this.start;
+  public long balanceAt(String user, int number) {
+    return this.tip.balanceAt(user, number);
+  } // balanceAt(String, int)
 
-      /* Check for next node */
-      @Override
-      public boolean hasNext() {
-        return !(this.block == null);
-      } // hasNext()
+  /**
+   * Determine how many transactions involve a user (as the source or the target).
+   *
+   * @param user The user.
+   * @return The number of transactions.
+   */
+  public int transactionCount(String user) {
+    IntList numbers = this.historyFor(user);
+    return (numbers == null) ? 0 : numbers.size();
+  } // transactionCount(String)
 
-      /* Get the next block */
-      @Override
-      public Block next() {
-        if (block == null) {
-          throw new NoSuchElementException();
-        } // if (!hasNext())
-        Block b = block.data;
-        block = this.block.next;
-        return b;
-      } // next()
-    };
-  } // blocks()
+  /**
+   * Get an iterator for all the transactions that involve a user, oldest first.
+   *
+   * @param user The user.
+   * @return An iterator for the user's transactions.
+   */
+  public Iterator<Transaction> transactionsFor(String user) {
+    return this.transactionsFor(user, 0, Integer.MAX_VALUE);
+  } // transactionsFor(String)
 
   /**
-   * Get an iterator for all the transactions in the chain.
+   * Get an iterator for one page of the transactions that involve a user, oldest first. The
+   * index of the user's transactions makes this take time proportional to the size of the page,
+   * not the length of the chain.
    *
-   * @return An iterator for all the transactions in the chain.
+   * @param user The user.
+   * @param offset The number of the user's transactions to skip.
+   * @param limit The most transactions to return.
+   * @return An iterator for the page of transactions.
+   *
+   * @throws IllegalArgumentException If offset or limit is negative.
    */
-  public Iterator<Transaction> iterator() {
+  public Iterator<Transaction> transactionsFor(String user, int offset, int limit) {
+    if (offset < 0 || limit < 0) {
+      throw new IllegalArgumentException("offset and limit may not be negative");
+    } // if
+    IntList numbers = this.historyFor(user);
+    int size = (numbers == null) ? 0 : numbers.size();
+    int end = (int) Math.min(size, (long) offset + limit);
     return new Iterator<Transaction>() {
-      private Iterator<Block> it = BlockChain.this.blocks();
+      private int i = offset;
 
-      /* Check for next node */
+      /* Check for next transaction */
       @Override
       public boolean hasNext() {
-        return it.hasNext();
+        return this.i < end;
       } // hasNext()
 
       /* Get the next transaction */
       @Override
       public Transaction next() {
-        if (!it.hasNext()) {
+        if (!this.hasNext()) {
           throw new NoSuchElementException();
         } // if (!hasNext())
-        return it.next().getTransaction();
+        return BlockChain.this.tip.transactionAt(numbers.get(this.i++));
       } // next()
     };
+  } // transactionsFor(String, int, int)
+
+  /**
+   * Get an iterator for all the blocks in the chain, as of the last change. Blocks appended
+   * while iterating are not included.
+   *
+   * @return An iterator for all the blocks in the chain.
+   */
+  public Iterator<Block> blocks() {
+    return this.tip.blocks();
+  } // blocks()
+
+  /**
+   * Get an iterator for all the transactions in the chain.
+   *
+   * @return An iterator for all the transactions in the chain.
+   */
+  public Iterator<Transaction> iterator() {
+    return this.tip.iterator();
   } // iterator()
+
+  /**
+   * Get a stream of all the blocks in the chain, as of the last change. The stream splits evenly,
+   * so it may be made parallel.
+   *
+   * @return The stream, oldest block first.
+   */
+  public Stream<Block> blockStream() {
+    return this.tip.blockStream();
+  } // blockStream()
+
+  /**
+   * Get a stream of a range of the blocks in the chain, as of the last change.
+   *
+   * @param from The number of the first block.
+   * @param to The number just past the last block.
+   * @return The stream, oldest block first.
+   *
+   * @throws IndexOutOfBoundsException If the range is not within the chain.
+   */
+  public Stream<Block> blockStream(int from, int to) {
+    return this.tip.blockStream(from, to);
+  } // blockStream(int, int)
+
+  /**
+   * Get a stream of all the transactions in the chain, as of the last change. The stream knows
+   * its size and splits evenly by transaction, so it may be made parallel.
+   *
+   * @return The stream, in the order the transactions apply.
+   */
+  public Stream<Transaction> transactions() {
+    return this.tip.transactions();
+  } // transactions()
+
+  /**
+   * Get a stream of the transactions in a range of blocks, as of the last change.
+   *
+   * @param from The number of the first block.
+   * @param to The number just past the last block.
+   * @return The stream, in the order the transactions apply.
+   *
+   * @throws IndexOutOfBoundsException If the range is not within the chain.
+   */
+  public Stream<Transaction> transactions(int from, int to) {
+    return this.tip.transactions(from, to);
+  } // transactions(int, int)
+
+  /**
+   * Get a stream of the transactions in a range of blocks that pass a test, as of the last
+   * change. The test is applied as each block is walked, before anything enters the stream.
+   *
+   * @param from The number of the first block.
+   * @param to The number just past the last block.
+   * @param keep Which transactions to include (or null, for all of them).
+   * @return The stream, in the order the transactions apply.
+   *
+   * @throws IndexOutOfBoundsException If the range is not within the chain.
+   */
+  public Stream<Transaction> transactions(int from, int to, Predicate<? super Transaction> keep) {
+    return this.tip.transactions(from, to, keep);
+  } // transactions(int, int, Predicate<? super Transaction>)
+
+  // +---------------+-----------------------------------------------
+  // | Inner Classes |
+  // +---------------+
+
+  /**
+   * A task that finds the first block with illegal hashes in a range, splitting large ranges in
+   * half. Ranges that start after an illegal block already found elsewhere are skipped.
+   */
+  private class HashCheck extends RecursiveTask<Integer> {
+    /**
+     * The version of the serialized form.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The number of the first block to check.
+     */
+    private final int from;
+
+    /**
+     * The number just past the last block to check.
+     */
+    private final int to;
+
+    /**
+     * The first illegal block found so far by any task (or Integer.MAX_VALUE).
+     */
+    private final AtomicInteger first;
+
+    /**
+     * Create a task to check a range of blocks.
+     *
+     * @param from The number of the first block to check.
+     * @param to The number just past the last block to check.
+     * @param first The first illegal block found so far by any task.
+     */
+    HashCheck(int from, int to, AtomicInteger first) {
+      this.from = from;
+      this.to = to;
+      this.first = first;
+    } // HashCheck(int, int, AtomicInteger)
+
+    /**
+     * Check the range.
+     *
+     * @return The first illegal block in the range, or Integer.MAX_VALUE if there is none.
+     */
+    @Override
+    protected Integer compute() {
+      if (this.from >= this.first.get()) {
+        return Integer.MAX_VALUE;
+      } // if
+      if (this.to - this.from > VERIFY_THRESHOLD) {
+        int mid = (this.from + this.to) >>> 1;
+        HashCheck right = new HashCheck(mid, this.to, this.first);
+        right.fork();
+        int left = new HashCheck(this.from, mid, this.first).compute();
+        return Math.min(left, right.join());
+      } // if
+      try {
+        for (int i = this.from; i < this.to; i++) {
+          if (!legalHash(i)) {
+            this.first.accumulateAndGet(i, Math::min);
+            return i;
+          } // if
+        } // for
+      } catch (NoSuchAlgorithmException e) {
+        this.first.accumulateAndGet(this.from, Math::min);
+        return this.from;
+      } // try/catch
+      return Integer.MAX_VALUE;
+    } // compute()
+  } // class HashCheck
 } // class BlockChain
@@ -0,0 +1,718 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+/**
+ * An append-only binary file of blocks, used as a write-ahead log for a
+ * chain. The file starts with a header (a magic number and a format
+ * version) followed by one record per block:
+ *
+ * <pre>
+ *   int    length of the rest of the record
+ *   int    CRC-32C of the rest of the record
+ *   int    block number
+ *   int    number of transactions
+ *   int    difficulty (leading zero bits, or 0 if none was recorded)
+ *   long   nonce
+ *   long   timestamp (milliseconds since the epoch, or 0 if none was recorded)
+ *   byte   flags (bit 0: the block has a previous hash)
+ *   byte[32] previous hash (zeros if there is none)
+ *   byte[32] hash
+ * </pre>
+ *
+ * followed by each transaction in turn:
+ *
+ * <pre>
+ *   int    amount
+ *   short  length of the source, then its UTF-8 bytes
+ *   short  length of the target, then its UTF-8 bytes
+ * </pre>
+ *
+ * Records are written through a buffer and read back through memory-mapped
+ * windows of the file. Blocks read from the file decode their hashes only
+ * when asked for them.
+ *
+ * Appended blocks are committed in groups: a single force makes every
+ * block appended since the last commit durable. A group is committed once
+ * it holds a maximum number of blocks or once its oldest block has waited
+ * a maximum time, whichever comes first, so a crash loses at most that
+ * many blocks or that much time. Call sync() to commit immediately. When
+ * the file is opened, records are replayed and a torn or corrupt tail
+ * (from a crash in the middle of a write) is cut off.
+ *
+ * Block files are safe to use from several threads.
+ *
+ * @author Sara Jaljaa
+ * @author Jenifer Silva
+ */
+public class BlockFile implements AutoCloseable {
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The magic number at the start of every block file ("BLKC").
+   */
+  static final int MAGIC = 0x424C4B43;
+
+  /**
+   * The version of the format.
+   */
+  static final int VERSION = 6;
+
+  /**
+   * The number of bytes in the header.
+   */
+  static final int HEADER_BYTES = 2 * Integer.BYTES;
+
+  /**
+   * The number of bytes in a stored hash.
+   */
+  static final int HASH_BYTES = BlockHasher.DIGEST_BYTES;
+
+  /**
+   * The number of bytes in a record before the transactions.
+   */
+  static final int FIXED_BYTES = 5 * Integer.BYTES + 2 * Long.BYTES + 1 + 2 * HASH_BYTES;
+
+  /**
+   * The fewest bytes a stored transaction takes (with empty names).
+   */
+  static final int MIN_TRANSACTION_BYTES = Integer.BYTES + 2 * Short.BYTES;
+
+  /**
+   * Where the checksummed part of a record starts.
+   */
+  static final int BODY_OFFSET = 2 * Integer.BYTES;
+
+  /**
+   * Where the previous hash starts in a record.
+   */
+  static final int PREV_HASH_OFFSET = 5 * Integer.BYTES + 2 * Long.BYTES + 1;
+
+  /**
+   * The size of the write buffer.
+   */
+  static final int BUFFER_BYTES = 1 << 16;
+
+  /**
+   * The largest window of the file we map at once, unless told otherwise.
+   */
+  static final long WINDOW_BYTES = 1L << 30;
+
+  /**
+   * The default maximum number of blocks in a group commit.
+   */
+  public static final int DEFAULT_MAX_BATCH = 256;
+
+  /**
+   * The default maximum time (in milliseconds) a block waits to be
+   * committed.
+   */
+  public static final long DEFAULT_MAX_LATENCY = 10;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The file.
+   */
+  private final FileChannel channel;
+
+  /**
+   * Records not yet written to the file.
+   */
+  private final ByteBuffer buffer;
+
+  /**
+   * The number of bytes written to the file (not counting the buffer).
+   */
+  private long written;
+
+  /**
+   * The offset of each record.
+   */
+  private long[] offsets;
+
+  /**
+   * The number of records.
+   */
+  private int count;
+
+  /**
+   * The blocks that were already in the file when it was opened.
+   */
+  private Block[] loaded;
+
+  /**
+   * The maximum number of blocks in a group commit.
+   */
+  private final int maxBatch;
+
+  /**
+   * The maximum time (in nanoseconds) a block waits to be committed.
+   */
+  private final long maxLatency;
+
+  /**
+   * The largest window of the file we map at once. No record longer than
+   * this can be read back.
+   */
+  private final long windowBytes;
+
+  /**
+   * The number of blocks appended since the last commit.
+   */
+  private int pending;
+
+  /**
+   * When the oldest uncommitted block was appended (from System.nanoTime).
+   */
+  private long pendingSince;
+
+  /**
+   * Whether the file has been closed.
+   */
+  private boolean closed;
+
+  /**
+   * The first failure of the committer thread (or null, if there is none).
+   */
+  private IOException failure;
+
+  /**
+   * Commits groups that reach the maximum latency (or null, if every
+   * append commits immediately).
+   */
+  private final Thread committer;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Open a block file with the default group commit limits.
+   *
+   * @param path
+   *    The path of the file.
+   *
+   * @throws IOException
+   *    If the file cannot be read or written, or is not a block file.
+   */
+  public BlockFile(Path path) throws IOException {
+    this(path, DEFAULT_MAX_BATCH, DEFAULT_MAX_LATENCY);
+  } // BlockFile(Path)
+
+  /**
+   * Open a block file, creating it if necessary, and read the blocks
+   * already in it. A torn or corrupt record at the end of the file (from a
+   * write that did not finish) is cut off, along with anything after it.
+   *
+   * @param path
+   *    The path of the file.
+   * @param maxBatch
+   *    The maximum number of blocks in a group commit; 1 commits every
+   *    block as it is appended.
+   * @param maxLatency
+   *    The maximum time (in milliseconds) a block waits to be committed;
+   *    0 commits every block as it is appended.
+   *
+   * @throws IOException
+   *    If the file cannot be read or written, or is not a block file.
+   * @throws IllegalArgumentException
+   *    If maxBatch is less than 1 or maxLatency is negative.
+   */
+  public BlockFile(Path path, int maxBatch, long maxLatency) throws IOException {
+    this(path, maxBatch, maxLatency, WINDOW_BYTES);
+  } // BlockFile(Path, int, long)
+
+  /**
+   * Open a block file that maps windows of a given size. Smaller windows
+   * let tests reach the edges of a window without huge files.
+   *
+   * @param path
+   *    The path of the file.
+   * @param maxBatch
+   *    The maximum number of blocks in a group commit.
+   * @param maxLatency
+   *    The maximum time (in milliseconds) a block waits to be committed.
+   * @param windowBytes
+   *    The largest window of the file to map at once.
+   *
+   * @throws IOException
+   *    If the file cannot be read or written, or is not a block file.
+   * @throws IllegalArgumentException
+   *    If maxBatch is less than 1, maxLatency is negative, or windowBytes
+   *    is not between HEADER_BYTES and WINDOW_BYTES.
+   */
+  BlockFile(Path path, int maxBatch, long maxLatency, long windowBytes) throws IOException {
+    if (maxBatch < 1 || maxLatency < 0) {
+      throw new IllegalArgumentException("invalid group commit limits");
+    } else if (windowBytes < HEADER_BYTES || windowBytes > WINDOW_BYTES) {
+      throw new IllegalArgumentException("invalid window size");
+    } // if
+    this.windowBytes = windowBytes;
+    this.channel = FileChannel.open(path, StandardOpenOption.CREATE,
+        StandardOpenOption.READ, StandardOpenOption.WRITE);
+    this.buffer = ByteBuffer.allocate(BUFFER_BYTES);
+    this.offsets = new long[16];
+    this.count = 0;
+    this.loaded = new Block[0];
+    if (this.channel.size() < HEADER_BYTES) {
+      this.channel.truncate(0);
+      this.buffer.putInt(MAGIC).putInt(VERSION);
+      this.written = 0;
+      this.flush();
+      this.channel.force(true);
+    } else {
+      this.scan();
+    } // if/else
+
+    if (maxLatency == 0) {
+      this.maxBatch = 1;
+    } else {
+      this.maxBatch = maxBatch;
+    } // if/else
+    this.maxLatency = maxLatency * 1_000_000L;
+    if (this.maxBatch > 1) {
+      this.committer = new Thread(this::commitLoop, "block-file-committer");
+      this.committer.setDaemon(true);
+      this.committer.start();
+    } else {
+      this.committer = null;
+    } // if/else
+  } // BlockFile(Path, int, long, long)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Get the blocks that were in the file when it was opened. The file
+   * forgets them afterwards, so this only works once.
+   *
+   * @return the blocks, in order.
+   */
+  Block[] takeLoaded() {
+    Block[] blocks = this.loaded;
+    this.loaded = new Block[0];
+    return blocks;
+  } // takeLoaded()
+
+  /**
+   * Determine how many blocks are in the file (including ones not yet
+   * flushed).
+   *
+   * @return the number of blocks.
+   */
+  public synchronized int size() {
+    return this.count;
+  } // size()
+
+  /**
+   * Add a block to the end of the file. The block is durable once its
+   * group is committed (or after the next sync).
+   *
+   * @param blk
+   *    The block to add.
+   *
+   * @throws IOException
+   *    If the block (or an earlier group) cannot be written.
+   */
+  public synchronized void append(Block blk) throws IOException {
+    this.checkOpen();
+    int count = blk.getTransactionCount();
+    byte[][] names = new byte[2 * count][];
+    int length = FIXED_BYTES + count * MIN_TRANSACTION_BYTES;
+    for (int i = 0; i < names.length; i++) {
+      Transaction t = blk.getTransaction(i / 2);
+      names[i] = ((i % 2 == 0) ? t.getSource() : t.getTarget()).getBytes(StandardCharsets.UTF_8);
+      if (names[i].length > 0xFFFF) {
+        throw new IllegalArgumentException("user name too long to store");
+      } // if
+      length += names[i].length;
+    } // for
+    Hash prev = blk.getPrevHash();
+    if ((prev != null && prev.length() != HASH_BYTES) || blk.getHash().length() != HASH_BYTES) {
+      throw new IllegalArgumentException("only " + HASH_BYTES + "-byte hashes can be stored");
+    } // if
+    if (length > this.buffer.remaining()) {
+      this.flush();
+    } // if
+    ByteBuffer out = (length > this.buffer.capacity())
+        ? ByteBuffer.allocate(length)
+        : this.buffer;
+
+    int start = out.position();
+    this.addOffset(this.written + this.buffer.position());
+    out.putInt(length - Integer.BYTES);
+    out.putInt(0);
+    out.putInt(blk.getNum());
+    out.putInt(count);
+    out.putInt(blk.getDifficulty());
+    out.putLong(blk.getNonce());
+    out.putLong(blk.getTimestamp());
+    out.put((byte) ((prev == null) ? 0 : 1));
+    putHash(out, prev);
+    putHash(out, blk.getHash());
+    for (int i = 0; i < count; i++) {
+      out.putInt(blk.getTransaction(i).getAmount());
+      out.putShort((short) names[2 * i].length).put(names[2 * i]);
+      out.putShort((short) names[2 * i + 1].length).put(names[2 * i + 1]);
+    } // for
+    out.putInt(start + Integer.BYTES, checksum(out, start + BODY_OFFSET, start + length));
+
+    if (out != this.buffer) {
+      out.flip();
+      this.writeFully(out);
+    } // if
+
+    if (this.pending++ == 0) {
+      this.pendingSince = System.nanoTime();
+      this.notifyAll();
+    } // if
+    if (this.pending >= this.maxBatch) {
+      this.commit();
+    } // if
+  } // append(Block)
+
+  /**
+   * Remove the last block from the file.
+   *
+   * @throws IOException
+   *    If the file cannot be truncated.
+   */
+  public synchronized void removeLast() throws IOException {
+    this.checkOpen();
+    long offset = this.offsets[--this.count];
+    if (offset >= this.written) {
+      this.buffer.position((int) (offset - this.written));
+      if (this.pending > 0) {
+        this.pending--;
+      } // if
+    } else {
+      /* The block may already be durable, so make its removal durable too */
+      this.buffer.clear();
+      this.channel.truncate(offset);
+      this.written = offset;
+      this.commit();
+    } // if/else
+  } // removeLast()
+
+  /**
+   * Commit every block appended so far, waiting until they are durable.
+   *
+   * @throws IOException
+   *    If the blocks cannot be written.
+   */
+  public synchronized void sync() throws IOException {
+    this.checkOpen();
+    if (this.pending > 0) {
+      this.commit();
+    } // if
+  } // sync()
+
+  /**
+   * Wait until every block appended so far has been committed, by the
+   * committer thread or otherwise.
+   *
+   * @param millis
+   *    The longest time to wait, in milliseconds.
+   * @return
+   *    true if the blocks were committed and false if the time ran out.
+   *
+   * @throws InterruptedException
+   *    If the thread is interrupted while waiting.
+   */
+  synchronized boolean awaitCommit(long millis) throws InterruptedException {
+    long deadline = System.nanoTime() + millis * 1_000_000L;
+    while (this.pending > 0 && this.failure == null && !this.closed) {
+      long wait = deadline - System.nanoTime();
+      if (wait <= 0) {
+        return false;
+      } // if
+      this.wait(wait / 1_000_000L, (int) (wait % 1_000_000L));
+    } // while
+    return this.pending == 0;
+  } // awaitCommit(long)
+
+  /**
+   * Commit any remaining blocks and close the file.
+   *
+   * @throws IOException
+   *    If the blocks cannot be written.
+   */
+  @Override
+  public void close() throws IOException {
+    synchronized (this) {
+      if (this.closed) {
+        return;
+      } // if
+      try {
+        if (this.failure == null) {
+          this.commit();
+        } // if
+      } finally {
+        this.closed = true;
+        this.notifyAll();
+        this.channel.close();
+      } // try/finally
+    } // synchronized
+    if (this.committer != null) {
+      try {
+        this.committer.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } // try/catch
+    } // if
+    if (this.failure != null) {
+      throw this.failure;
+    } // if
+  } // close()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Write any buffered blocks to the file (without forcing them to the
+   * device).
+   *
+   * @throws IOException
+   *    If the blocks cannot be written.
+   */
+  private void flush() throws IOException {
+    this.buffer.flip();
+    this.writeFully(this.buffer);
+    this.buffer.clear();
+  } // flush()
+
+  /**
+   * Write the buffered blocks and force every block written so far to the
+   * device. The caller must hold the lock.
+   *
+   * @throws IOException
+   *    If the blocks cannot be written.
+   */
+  private void commit() throws IOException {
+    this.flush();
+    this.channel.force(false);
+    this.pending = 0;
+  } // commit()
+
+  /**
+   * Commit each group once its oldest block has waited the maximum time.
+   * Runs on the committer thread until the file is closed.
+   */
+  private synchronized void commitLoop() {
+    while (!this.closed && this.failure == null) {
+      try {
+        if (this.pending == 0) {
+          this.wait();
+        } else {
+          long wait = this.pendingSince + this.maxLatency - System.nanoTime();
+          if (wait > 0) {
+            this.wait(wait / 1_000_000L, (int) (wait % 1_000_000L));
+          } else {
+            this.commit();
+            this.notifyAll();
+          } // if/else
+        } // if/else
+      } catch (InterruptedException e) {
+        return;
+      } catch (IOException e) {
+        this.failure = e;
+      } // try/catch
+    } // while
+  } // commitLoop()
+
+  /**
+   * Make sure the file is still usable.
+   *
+   * @throws IOException
+   *    If the file is closed or a commit has failed.
+   */
+  private void checkOpen() throws IOException {
+    if (this.failure != null) {
+      throw new IOException("an earlier commit failed", this.failure);
+    } else if (this.closed) {
+      throw new IOException("block file is closed");
+    } // if
+  } // checkOpen()
+
+  /**
+   * Compute the checksum of part of a buffer.
+   *
+   * @param bytes
+   *    The buffer.
+   * @param from
+   *    The index of the first byte (inclusive).
+   * @param to
+   *    The index of the last byte (exclusive).
+   * @return
+   *    The CRC-32C of the bytes.
+   */
+  private static int checksum(ByteBuffer bytes, int from, int to) {
+    CRC32C crc = new CRC32C();
+    crc.update(bytes.duplicate().limit(to).position(from));
+    return (int) crc.getValue();
+  } // checksum(ByteBuffer, int, int)
+
+  /**
+   * Write all of a buffer at the end of the file.
+   *
+   * @param bytes
+   *    The buffer.
+   *
+   * @throws IOException
+   *    If the bytes cannot be written.
+   */
+  private void writeFully(ByteBuffer bytes) throws IOException {
+    while (bytes.hasRemaining()) {
+      this.written += this.channel.write(bytes, this.written);
+    } // while
+  } // writeFully(ByteBuffer)
+
+  /**
+   * Remember where a record starts.
+   *
+   * @param offset
+   *    The offset of the record.
+   */
+  private void addOffset(long offset) {
+    if (this.count == this.offsets.length) {
+      this.offsets = Arrays.copyOf(this.offsets, 2 * this.count);
+    } // if
+    this.offsets[this.count++] = offset;
+  } // addOffset(long)
+
+  /**
+   * Store a hash, or zeros if there is none.
+   *
+   * @param out
+   *    Where to store the hash.
+   * @param hash
+   *    The hash (or null).
+   */
+  private static void putHash(ByteBuffer out, Hash hash) {
+    if (hash == null) {
+      out.put(new byte[HASH_BYTES]);
+    } else {
+      hash.writeTo(out);
+    } // if/else
+  } // putHash(ByteBuffer, Hash)
+
+  /**
+   * Read every record in the file through memory-mapped windows, cutting
+   * off the first torn or corrupt record and everything after it.
+   *
+   * @throws IOException
+   *    If the file cannot be read or is not a block file.
+   */
+  private void scan() throws IOException {
+    long size = this.channel.size();
+    ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+    this.channel.read(header, 0);
+    header.flip();
+    if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+      throw new IOException("not a version " + VERSION + " block file");
+    } // if
+
+    Block[] blocks = new Block[16];
+    long offset = HEADER_BYTES;
+    MappedByteBuffer window = null;
+    long windowStart = 0;
+    while (offset + Integer.BYTES <= size) {
+      /* Map a new window if the record does not start in this one */
+      if (window == null || offset + Integer.BYTES > windowStart + window.limit()) {
+        windowStart = offset;
+        window = this.channel.map(FileChannel.MapMode.READ_ONLY, offset,
+            Math.min(this.windowBytes, size - offset));
+      } // if
+      int pos = (int) (offset - windowStart);
+      int length = window.getInt(pos);
+      long end = offset + Integer.BYTES + length;
+      if (length < FIXED_BYTES - Integer.BYTES + MIN_TRANSACTION_BYTES || end > size
+          || Integer.BYTES + (long) length > this.windowBytes) {
+        break;
+      } // if
+      if (end > windowStart + window.limit()) {
+        window = null;
+        continue;
+      } // if
+      if (window.getInt(pos + Integer.BYTES)
+          != checksum(window, pos + BODY_OFFSET, (int) (end - windowStart))) {
+        break;
+      } // if
+
+      if (this.count == blocks.length) {
+        blocks = Arrays.copyOf(blocks, 2 * this.count);
+      } // if
+      blocks[this.count] = decode(window, pos);
+      this.addOffset(offset);
+      offset = end;
+    } // while
+
+    this.loaded = Arrays.copyOf(blocks, this.count);
+    if (offset < size) {
+      this.channel.truncate(offset);
+      this.channel.force(true);
+    } // if
+    this.written = offset;
+  } // scan()
+
+  /**
+   * Decode a block from a record. The hashes are left in the buffer until
+   * someone asks for them.
+   *
+   * @param in
+   *    The mapped window holding the record.
+   * @param pos
+   *    The position of the record in the window.
+   * @return
+   *    The block.
+   */
+  private static Block decode(ByteBuffer in, int pos) {
+    ByteBuffer record = in.duplicate();
+    record.position(pos + BODY_OFFSET);
+    int number = record.getInt();
+    Transaction[] transactions = new Transaction[record.getInt()];
+    int difficulty = record.getInt();
+    long nonce = record.getLong();
+    long timestamp = record.getLong();
+    boolean hasPrev = record.get() != 0;
+    record.position(record.position() + 2 * HASH_BYTES);
+    for (int i = 0; i < transactions.length; i++) {
+      int amount = record.getInt();
+      String source = getName(record);
+      String target = getName(record);
+      transactions[i] = new Transaction(source, target, amount);
+    } // for
+    return new Block(number, transactions, nonce, difficulty, timestamp, in,
+        pos + PREV_HASH_OFFSET, hasPrev);
+  } // decode(ByteBuffer, int)
+
+  /**
+   * Read a user name.
+   *
+   * @param in
+   *    The buffer, positioned at the name's length.
+   * @return
+   *    The name.
+   */
+  private static String getName(ByteBuffer in) {
+    byte[] bytes = new byte[Short.toUnsignedInt(in.getShort())];
+    in.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  } // getName(ByteBuffer)
+} // class BlockFile
@@ -0,0 +1,461 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.util.Arrays;
+
+/**
+ * A reusable SHA-256 hasher for blocks. The fixed prefix of a block (its
+ * number, its transaction or the Merkle root of its transactions, the
+ * previous hash, and, for a block that records them, its difficulty and
+ * timestamp) is compressed once into a midstate; each nonce then costs
+ * only the one or two final compression rounds. The digest stays in the
+ * hasher's own working state, so counting its leading zeros allocates
+ * nothing; only hash() builds a (new, immutable) Hash. User
+ * names are serialized with the UTF-8 encodings cached by the user
+ * dictionary, so they are never re-encoded and the hash does not depend on
+ * the platform's default charset.
+ *
+ * Hashers are not thread safe. Each thread should use its own.
+ *
+ * @author Sara Jaljaa
+ * @author Jenifer Silva
+ */
+final class BlockHasher {
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The number of bytes in a SHA-256 message block.
+   */
+  static final int BLOCK_BYTES = 64;
+
+  /**
+   * The number of bytes in a SHA-256 digest.
+   */
+  static final int DIGEST_BYTES = 32;
+
+  /**
+   * The number of bytes of difficulty and timestamp at the end of the
+   * prefix of a block that records them.
+   */
+  static final int STAMP_BYTES = Integer.BYTES + Long.BYTES;
+
+  /**
+   * The initial SHA-256 state.
+   */
+  private static final int[] INITIAL = {
+    0x6a09e667, 0xbb67ae85, 0x3c6ef372, 0xa54ff53a,
+    0x510e527f, 0x9b05688c, 0x1f83d9ab, 0x5be0cd19
+  };
+
+  /**
+   * The SHA-256 round constants.
+   */
+  private static final int[] K = {
+    0x428a2f98, 0x71374491, 0xb5c0fbcf, 0xe9b5dba5, 0x3956c25b, 0x59f111f1,
+    0x923f82a4, 0xab1c5ed5, 0xd807aa98, 0x12835b01, 0x243185be, 0x550c7dc3,
+    0x72be5d74, 0x80deb1fe, 0x9bdc06a7, 0xc19bf174, 0xe49b69c1, 0xefbe4786,
+    0x0fc19dc6, 0x240ca1cc, 0x2de92c6f, 0x4a7484aa, 0x5cb0a9dc, 0x76f988da,
+    0x983e5152, 0xa831c66d, 0xb00327c8, 0xbf597fc7, 0xc6e00bf3, 0xd5a79147,
+    0x06ca6351, 0x14292967, 0x27b70a85, 0x2e1b2138, 0x4d2c6dfc, 0x53380d13,
+    0x650a7354, 0x766a0abb, 0x81c2c92e, 0x92722c85, 0xa2bfe8a1, 0xa81a664b,
+    0xc24b8b70, 0xc76c51a3, 0xd192e819, 0xd6990624, 0xf40e3585, 0x106aa070,
+    0x19a4c116, 0x1e376c08, 0x2748774c, 0x34b0bcb5, 0x391c0cb3, 0x4ed8aa4a,
+    0x5b9cca4f, 0x682e6ff3, 0x748f82ee, 0x78a5636f, 0x84c87814, 0x8cc70208,
+    0x90befffa, 0xa4506ceb, 0xbef9a3f7, 0xc67178f2
+  };
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The serialized prefix of the current block.
+   */
+  private byte[] prefix = new byte[BLOCK_BYTES];
+
+  /**
+   * The state after compressing every full message block of the prefix.
+   */
+  private final int[] midstate = new int[8];
+
+  /**
+   * The rest of the prefix, followed by the nonce and the padding.
+   */
+  private final byte[] tail = new byte[2 * BLOCK_BYTES];
+
+  /**
+   * Where the nonce goes in the tail.
+   */
+  private int nonceOffset;
+
+  /**
+   * The number of bytes in the tail (one or two message blocks).
+   */
+  private int tailLength;
+
+  /**
+   * The working state.
+   */
+  private final int[] state = new int[8];
+
+  /**
+   * The message schedule.
+   */
+  private final int[] schedule = new int[64];
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Prepare to hash the block with the given contents, for a block that
+   * records no difficulty or timestamp.
+   *
+   * @param number
+   *    The number of the block.
+   * @param transaction
+   *    The transaction in the block.
+   * @param prevHash
+   *    The previous block's hash (or null, if there is none).
+   */
+  void reset(int number, Transaction transaction, Hash prevHash) {
+    this.reset(number, transaction, prevHash, 0, 0);
+  } // reset(int, Transaction, Hash)
+
+  /**
+   * Prepare to hash the block with the given contents.
+   *
+   * @param number
+   *    The number of the block.
+   * @param transaction
+   *    The transaction in the block.
+   * @param prevHash
+   *    The previous block's hash (or null, if there is none).
+   * @param difficulty
+   *    The difficulty the block records (or 0).
+   * @param timestamp
+   *    The time the block records (or 0).
+   */
+  void reset(int number, Transaction transaction, Hash prevHash, int difficulty,
+      long timestamp) {
+    int prevLength = (prevHash == null) ? 0 : prevHash.length();
+    int length = Integer.BYTES + transaction.encodedLength() + Integer.BYTES + prevLength
+        + stampLength(difficulty, timestamp);
+    this.ensurePrefix(length);
+
+    /* Serialize the prefix */
+    int pos = putInt(this.prefix, 0, number);
+    pos = transaction.encodeUsers(this.prefix, pos);
+    pos = putInt(this.prefix, pos, transaction.getAmount());
+    if (prevHash != null) {
+      prevHash.copyTo(this.prefix, pos);
+    } // if
+    this.putStamp(pos + prevLength, difficulty, timestamp);
+    this.prepare(length);
+  } // reset(int, Transaction, Hash, int, long)
+
+  /**
+   * Prepare to hash a block of several transactions, given their Merkle
+   * root, for a block that records no difficulty or timestamp.
+   *
+   * @param number
+   *    The number of the block.
+   * @param root
+   *    The Merkle root of the transactions in the block.
+   * @param prevHash
+   *    The previous block's hash (or null, if there is none).
+   */
+  void reset(int number, Hash root, Hash prevHash) {
+    this.reset(number, root, prevHash, 0, 0);
+  } // reset(int, Hash, Hash)
+
+  /**
+   * Prepare to hash a block of several transactions, given their Merkle
+   * root.
+   *
+   * @param number
+   *    The number of the block.
+   * @param root
+   *    The Merkle root of the transactions in the block.
+   * @param prevHash
+   *    The previous block's hash (or null, if there is none).
+   * @param difficulty
+   *    The difficulty the block records (or 0).
+   * @param timestamp
+   *    The time the block records (or 0).
+   */
+  void reset(int number, Hash root, Hash prevHash, int difficulty, long timestamp) {
+    int prevLength = (prevHash == null) ? 0 : prevHash.length();
+    int length = Integer.BYTES + root.length() + prevLength
+        + stampLength(difficulty, timestamp);
+    this.ensurePrefix(length);
+
+    /* Serialize the prefix */
+    int pos = putInt(this.prefix, 0, number);
+    root.copyTo(this.prefix, pos);
+    if (prevHash != null) {
+      prevHash.copyTo(this.prefix, pos + root.length());
+    } // if
+    this.putStamp(pos + root.length() + prevLength, difficulty, timestamp);
+    this.prepare(length);
+  } // reset(int, Hash, Hash, int, long)
+
+  /**
+   * Hash the current block with a nonce.
+   *
+   * @param nonce
+   *    The nonce.
+   * @return
+   *    The hash of the block with that nonce.
+   */
+  Hash hash(long nonce) {
+    this.compressTail(nonce);
+    int[] h = this.state;
+    return new Hash(Hash.MAX_BYTES, word(h[0], h[1]), word(h[2], h[3]), word(h[4], h[5]),
+        word(h[6], h[7]));
+  } // hash(long)
+
+  /**
+   * Determine whether the hash of the current block with a nonce meets the
+   * requirements of a validator. This only builds a Hash if the validator
+   * needs one (see HashValidator.isValid(long, long, long, long)).
+   *
+   * @param nonce
+   *    The nonce.
+   * @param check
+   *    The validator.
+   * @return
+   *    Whether the hash is valid.
+   */
+  boolean isValid(long nonce, HashValidator check) {
+    this.compressTail(nonce);
+    int[] h = this.state;
+    return check.isValid(word(h[0], h[1]), word(h[2], h[3]), word(h[4], h[5]),
+        word(h[6], h[7]));
+  } // isValid(long, HashValidator)
+
+  /**
+   * Count the zero bits at the start of the hash of the current block
+   * with a nonce, without building the hash.
+   *
+   * @param nonce
+   *    The nonce.
+   * @return
+   *    The number of leading zero bits.
+   */
+  int leadingZeroBits(long nonce) {
+    this.compressTail(nonce);
+    int[] h = this.state;
+    int zeros = 0;
+    for (int i = 0; i < h.length; i += 2) {
+      long word = word(h[i], h[i + 1]);
+      zeros += Long.numberOfLeadingZeros(word);
+      if (word != 0) {
+        break;
+      } // if
+    } // for
+    return zeros;
+  } // leadingZeroBits(long)
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Determine how many bytes a block's difficulty and timestamp add to its
+   * prefix. Blocks that record neither hash exactly as they did before
+   * blocks recorded them.
+   *
+   * @param difficulty
+   *    The difficulty the block records (or 0).
+   * @param timestamp
+   *    The time the block records (or 0).
+   * @return
+   *    The number of bytes.
+   */
+  private static int stampLength(int difficulty, long timestamp) {
+    return (difficulty == 0 && timestamp == 0) ? 0 : STAMP_BYTES;
+  } // stampLength(int, long)
+
+  /**
+   * Serialize a block's difficulty and timestamp, if it records them.
+   *
+   * @param pos
+   *    Where they go in the prefix.
+   * @param difficulty
+   *    The difficulty the block records (or 0).
+   * @param timestamp
+   *    The time the block records (or 0).
+   */
+  private void putStamp(int pos, int difficulty, long timestamp) {
+    if (stampLength(difficulty, timestamp) > 0) {
+      putLong(this.prefix, putInt(this.prefix, pos, difficulty), timestamp);
+    } // if
+  } // putStamp(int, int, long)
+
+  /**
+   * Make sure the prefix array can hold a prefix.
+   *
+   * @param length
+   *    The number of bytes in the prefix.
+   */
+  private void ensurePrefix(int length) {
+    if (length > this.prefix.length) {
+      this.prefix = new byte[Math.max(length, 2 * this.prefix.length)];
+    } // if
+  } // ensurePrefix(int)
+
+  /**
+   * Compute the midstate and lay out the tail for the serialized prefix.
+   *
+   * @param length
+   *    The number of bytes in the prefix.
+   */
+  private void prepare(int length) {
+    /* Compress the full message blocks once */
+    System.arraycopy(INITIAL, 0, this.midstate, 0, INITIAL.length);
+    int full = length - (length % BLOCK_BYTES);
+    for (int off = 0; off < full; off += BLOCK_BYTES) {
+      compress(this.midstate, this.prefix, off, this.schedule);
+    } // for
+
+    /* Lay out the tail: leftover prefix, nonce, padding, bit length */
+    int rest = length - full;
+    Arrays.fill(this.tail, (byte) 0);
+    System.arraycopy(this.prefix, full, this.tail, 0, rest);
+    this.nonceOffset = rest;
+    this.tail[rest + Long.BYTES] = (byte) 0x80;
+    this.tailLength = (rest + Long.BYTES + 1 + Long.BYTES <= BLOCK_BYTES)
+        ? BLOCK_BYTES : 2 * BLOCK_BYTES;
+    putLong(this.tail, this.tailLength - Long.BYTES,
+        8L * (length + Long.BYTES));
+  } // prepare(int)
+
+  /**
+   * Store an int, big-endian.
+   *
+   * @param bytes
+   *    Where to store the int.
+   * @param pos
+   *    The index of the first byte.
+   * @param val
+   *    The int.
+   * @return
+   *    The index just after the int.
+   */
+  private static int putInt(byte[] bytes, int pos, int val) {
+    bytes[pos] = (byte) (val >>> 24);
+    bytes[pos + 1] = (byte) (val >>> 16);
+    bytes[pos + 2] = (byte) (val >>> 8);
+    bytes[pos + 3] = (byte) val;
+    return pos + Integer.BYTES;
+  } // putInt(byte[], int, int)
+
+  /**
+   * Finish hashing the current block with a nonce, leaving the digest in
+   * the working state.
+   *
+   * @param nonce
+   *    The nonce.
+   */
+  private void compressTail(long nonce) {
+    putLong(this.tail, this.nonceOffset, nonce);
+    System.arraycopy(this.midstate, 0, this.state, 0, this.state.length);
+    for (int off = 0; off < this.tailLength; off += BLOCK_BYTES) {
+      compress(this.state, this.tail, off, this.schedule);
+    } // for
+  } // compressTail(long)
+
+  /**
+   * Pack two ints into a long, big-endian.
+   *
+   * @param hi
+   *    The high int.
+   * @param lo
+   *    The low int.
+   * @return
+   *    The long.
+   */
+  private static long word(int hi, int lo) {
+    return ((long) hi << 32) | (lo & 0xffffffffL);
+  } // word(int, int)
+
+  /**
+   * Store a long, big-endian.
+   *
+   * @param bytes
+   *    Where to store the long.
+   * @param pos
+   *    The index of the first byte.
+   * @param val
+   *    The long.
+   */
+  private static void putLong(byte[] bytes, int pos, long val) {
+    putInt(bytes, pos, (int) (val >>> 32));
+    putInt(bytes, pos + Integer.BYTES, (int) val);
+  } // putLong(byte[], int, long)
+
+  /**
+   * Run the SHA-256 compression function over one message block.
+   *
+   * @param h
+   *    The state to update.
+   * @param bytes
+   *    The message.
+   * @param off
+   *    The offset of the message block.
+   * @param w
+   *    Space for the message schedule.
+   */
+  private static void compress(int[] h, byte[] bytes, int off, int[] w) {
+    for (int i = 0; i < 16; i++) {
+      int p = off + i * Integer.BYTES;
+      w[i] = (bytes[p] << 24) | ((bytes[p + 1] & 0xff) << 16)
+          | ((bytes[p + 2] & 0xff) << 8) | (bytes[p + 3] & 0xff);
+    } // for
+    for (int i = 16; i < 64; i++) {
+      int s0 = Integer.rotateRight(w[i - 15], 7)
+          ^ Integer.rotateRight(w[i - 15], 18) ^ (w[i - 15] >>> 3);
+      int s1 = Integer.rotateRight(w[i - 2], 17)
+          ^ Integer.rotateRight(w[i - 2], 19) ^ (w[i - 2] >>> 10);
+      w[i] = w[i - 16] + s0 + w[i - 7] + s1;
+    } // for
+
+    int a = h[0];
+    int b = h[1];
+    int c = h[2];
+    int d = h[3];
+    int e = h[4];
+    int f = h[5];
+    int g = h[6];
+    int hh = h[7];
+    for (int i = 0; i < 64; i++) {
+      int s1 = Integer.rotateRight(e, 6) ^ Integer.rotateRight(e, 11)
+          ^ Integer.rotateRight(e, 25);
+      int ch = (e & f) ^ (~e & g);
+      int t1 = hh + s1 + ch + K[i] + w[i];
+      int s0 = Integer.rotateRight(a, 2) ^ Integer.rotateRight(a, 13)
+          ^ Integer.rotateRight(a, 22);
+      int maj = (a & b) ^ (a & c) ^ (b & c);
+      int t2 = s0 + maj;
+      hh = g;
+      g = f;
+      f = e;
+      e = d + t1;
+      d = c;
+      c = b;
+      b = a;
+      a = t1 + t2;
+    } // for
+    h[0] += a;
+    h[1] += b;
+    h[2] += c;
+    h[3] += d;
+    h[4] += e;
+    h[5] += f;
+    h[6] += g;
+    h[7] += hh;
+  } // compress(int[], byte[], int, int[])
+} // class BlockHasher
@@ -0,0 +1,544 @@
+package edu.grinnell.csc207.blockchains;
+
+import edu.grinnell.csc207.util.PersistentLedger;
+import edu.grinnell.csc207.util.SegmentedIntList;
+import edu.grinnell.csc207.util.SegmentedList;
+import edu.grinnell.csc207.util.UserDictionary;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A read-only view of a chain, pinned to the height the chain had when
+ * the view was published. Views never change: blocks appended to (or
+ * removed from) the chain later do not show up in (or disappear from) a
+ * view, and neither do the balances it reports. A chain publishes a new
+ * view after every change, and any thread may read a view without
+ * locking.
+ *
+ * Blocks and transactions are also available as streams. The streams know
+ * their exact sizes and split evenly (transactions by position, not by
+ * block), so parallel streams spread even a few huge blocks across cores.
+ * Ranges of blocks, and filters on transactions, are applied inside the
+ * spliterators rather than by skipping through the whole chain.
+ *
+ * @author Sara Jaljaa
+ * @author Jenifer Silva
+ */
+public final class ChainView implements Iterable<Transaction> {
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The blocks in the view, indexed by block number.
+   */
+  private final SegmentedList<Block> store;
+
+  /**
+   * The balances after each block, indexed by block number.
+   */
+  private final SegmentedList<PersistentLedger> balances;
+
+  /**
+   * For each block, the position just after its last transaction.
+   */
+  private final SegmentedIntList txEnds;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a view of some blocks.
+   *
+   * @param store
+   *    A snapshot of the chain's blocks.
+   * @param balances
+   *    A snapshot of the balances after each of those blocks.
+   * @param txEnds
+   *    A snapshot of the position just after each block's last
+   *    transaction.
+   */
+  ChainView(SegmentedList<Block> store, SegmentedList<PersistentLedger> balances,
+      SegmentedIntList txEnds) {
+    this.store = store;
+    this.balances = balances;
+    this.txEnds = txEnds;
+  } // ChainView(SegmentedList<Block>, SegmentedList<PersistentLedger>, SegmentedIntList)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Get the number of blocks in the view.
+   *
+   * @return the number of blocks, including the initial block.
+   */
+  public int getSize() {
+    return this.store.size();
+  } // getSize()
+
+  /**
+   * Get the hash of the last block in the view.
+   *
+   * @return the hash of the last block.
+   */
+  public Hash getHash() {
+    return this.store.getLast().getHash();
+  } // getHash()
+
+  /**
+   * Get a block by its number.
+   *
+   * @param number
+   *    The number of the block, between 0 (inclusive) and getSize()
+   *    (exclusive).
+   * @return the block.
+   *
+   * @throws IndexOutOfBoundsException
+   *    If there is no block with that number in the view.
+   */
+  public Block getBlockByNumber(int number) {
+    return this.store.get(number);
+  } // getBlockByNumber(int)
+
+  /**
+   * Find one user's balance after the last block in the view.
+   *
+   * @param user
+   *    The user whose balance we want to find.
+   * @return that user's balance (or 0, if the user is not in the system).
+   */
+  public long balance(String user) {
+    return this.balanceAt(user, this.store.size() - 1);
+  } // balance(String)
+
+  /**
+   * Find one user's balance just after a given block.
+   *
+   * @param user
+   *    The user whose balance we want to find.
+   * @param number
+   *    The number of the block, between 0 (inclusive) and getSize()
+   *    (exclusive).
+   * @return that user's balance (or 0, if the user was not yet in the
+   *    system).
+   *
+   * @throws IndexOutOfBoundsException
+   *    If there is no block with that number in the view.
+   */
+  public long balanceAt(String user, int number) {
+    PersistentLedger users = this.balances.get(number);
+    int id = UserDictionary.global().idOf(user);
+    return (id < 0) ? 0 : users.get(id);
+  } // balanceAt(String, int)
+
+  /**
+   * Get an iterator for all the people who participated in the system,
+   * as of the last block in the view.
+   *
+   * @return an iterator for the people, in no particular order.
+   */
+  public Iterator<String> users() {
+    PrimitiveIterator.OfInt ids = this.balances.getLast().users();
+    return new Iterator<String>() {
+      /* Check for next user */
+      @Override
+      public boolean hasNext() {
+        return ids.hasNext();
+      } // hasNext()
+
+      /* Get the next user's name */
+      @Override
+      public String next() {
+        return UserDictionary.global().name(ids.nextInt());
+      } // next()
+    };
+  } // users()
+
+  /**
+   * Get an iterator for all the blocks in the view.
+   *
+   * @return an iterator for the blocks, oldest first.
+   */
+  public Iterator<Block> blocks() {
+    return new Iterator<Block>() {
+      private int number = 0;
+
+      /* Check for next block */
+      @Override
+      public boolean hasNext() {
+        return this.number < ChainView.this.store.size();
+      } // hasNext()
+
+      /* Get the next block */
+      @Override
+      public Block next() {
+        if (!this.hasNext()) {
+          throw new NoSuchElementException();
+        } // if (!hasNext())
+        return ChainView.this.store.get(this.number++);
+      } // next()
+    };
+  } // blocks()
+
+  /**
+   * Get an iterator for all the transactions in the view.
+   *
+   * @return an iterator for the transactions, in the order they apply.
+   */
+  @Override
+  public Iterator<Transaction> iterator() {
+    return new Iterator<Transaction>() {
+      private Iterator<Block> it = ChainView.this.blocks();
+
+      /* The current block (or null, before the first) */
+      private Block blk = null;
+
+      /* The index of the next transaction in the current block */
+      private int i = 0;
+
+      /* Check for next transaction */
+      @Override
+      public boolean hasNext() {
+        return (this.blk != null && this.i < this.blk.transactions.length) || it.hasNext();
+      } // hasNext()
+
+      /* Get the next transaction */
+      @Override
+      public Transaction next() {
+        if (!this.hasNext()) {
+          throw new NoSuchElementException();
+        } // if (!hasNext())
+        if (this.blk == null || this.i == this.blk.transactions.length) {
+          this.blk = it.next();
+          this.i = 0;
+        } // if
+        return this.blk.transactions[this.i++];
+      } // next()
+    };
+  } // iterator()
+
+  /**
+   * Get a stream of all the blocks in the view.
+   *
+   * @return the stream, oldest block first.
+   */
+  public Stream<Block> blockStream() {
+    return this.blockStream(0, this.store.size());
+  } // blockStream()
+
+  /**
+   * Get a stream of a range of the blocks in the view.
+   *
+   * @param from
+   *    The number of the first block.
+   * @param to
+   *    The number just past the last block.
+   * @return the stream, oldest block first.
+   *
+   * @throws IndexOutOfBoundsException
+   *    If the range is not within the view.
+   */
+  public Stream<Block> blockStream(int from, int to) {
+    this.checkRange(from, to);
+    return StreamSupport.stream(new BlockSpliterator(from, to), false);
+  } // blockStream(int, int)
+
+  /**
+   * Get a stream of all the transactions in the view.
+   *
+   * @return the stream, in the order the transactions apply.
+   */
+  public Stream<Transaction> transactions() {
+    return this.transactions(0, this.store.size(), null);
+  } // transactions()
+
+  /**
+   * Get a stream of the transactions in a range of blocks.
+   *
+   * @param from
+   *    The number of the first block.
+   * @param to
+   *    The number just past the last block.
+   * @return the stream, in the order the transactions apply.
+   *
+   * @throws IndexOutOfBoundsException
+   *    If the range is not within the view.
+   */
+  public Stream<Transaction> transactions(int from, int to) {
+    return this.transactions(from, to, null);
+  } // transactions(int, int)
+
+  /**
+   * Get a stream of the transactions in a range of blocks that pass a
+   * test. The test runs as the spliterator walks each block's
+   * transactions, so rejected transactions never enter the stream.
+   *
+   * @param from
+   *    The number of the first block.
+   * @param to
+   *    The number just past the last block.
+   * @param keep
+   *    Which transactions to include (or null, for all of them). In a
+   *    parallel stream, the test runs on several threads at once.
+   * @return the stream, in the order the transactions apply.
+   *
+   * @throws IndexOutOfBoundsException
+   *    If the range is not within the view.
+   */
+  public Stream<Transaction> transactions(int from, int to, Predicate<? super Transaction> keep) {
+    this.checkRange(from, to);
+    int start = (from == 0) ? 0 : this.txEnds.get(from - 1);
+    int end = (to == 0) ? 0 : this.txEnds.get(to - 1);
+    return StreamSupport.stream(new TransactionSpliterator(start, end, keep), false);
+  } // transactions(int, int, Predicate<? super Transaction>)
+
+  /**
+   * Find a transaction by its position in the view.
+   *
+   * @param position
+   *    The position, counting every transaction in the view from 0.
+   * @return the transaction.
+   */
+  Transaction transactionAt(int position) {
+    int number = this.blockContaining(position);
+    return this.store.get(number).transactions[position - this.firstPosition(number)];
+  } // transactionAt(int)
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Make sure a range of blocks is within the view.
+   *
+   * @param from
+   *    The number of the first block.
+   * @param to
+   *    The number just past the last block.
+   *
+   * @throws IndexOutOfBoundsException
+   *    If it is not.
+   */
+  private void checkRange(int from, int to) {
+    if (from < 0 || from > to || to > this.store.size()) {
+      throw new IndexOutOfBoundsException("blocks " + from + " to " + to + " of "
+          + this.store.size());
+    } // if
+  } // checkRange(int, int)
+
+  /**
+   * Find the block that holds a transaction.
+   *
+   * @param position
+   *    The position of the transaction, counting every transaction in the
+   *    view from 0.
+   * @return the number of the block.
+   */
+  private int blockContaining(int position) {
+    /* Find the first block that ends after the position */
+    int lo = 0;
+    int hi = this.txEnds.size() - 1;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (this.txEnds.get(mid) > position) {
+        hi = mid;
+      } else {
+        lo = mid + 1;
+      } // if/else
+    } // while
+    return lo;
+  } // blockContaining(int)
+
+  /**
+   * Find the position of a block's first transaction.
+   *
+   * @param number
+   *    The number of the block.
+   * @return the position.
+   */
+  private int firstPosition(int number) {
+    return (number == 0) ? 0 : this.txEnds.get(number - 1);
+  } // firstPosition(int)
+
+  // +---------------+-----------------------------------------------
+  // | Inner Classes |
+  // +---------------+
+
+  /**
+   * A spliterator over a range of blocks, split in half by block number.
+   */
+  private class BlockSpliterator implements Spliterator<Block> {
+    /**
+     * The number of the next block.
+     */
+    private int next;
+
+    /**
+     * The number just past the last block.
+     */
+    private final int to;
+
+    /**
+     * Create a spliterator over a range of blocks.
+     *
+     * @param from The number of the first block.
+     * @param to The number just past the last block.
+     */
+    BlockSpliterator(int from, int to) {
+      this.next = from;
+      this.to = to;
+    } // BlockSpliterator(int, int)
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Block> action) {
+      if (this.next >= this.to) {
+        return false;
+      } // if
+      action.accept(ChainView.this.store.get(this.next++));
+      return true;
+    } // tryAdvance(Consumer<? super Block>)
+
+    @Override
+    public void forEachRemaining(Consumer<? super Block> action) {
+      while (this.next < this.to) {
+        action.accept(ChainView.this.store.get(this.next++));
+      } // while
+    } // forEachRemaining(Consumer<? super Block>)
+
+    @Override
+    public Spliterator<Block> trySplit() {
+      int mid = (this.next + this.to) >>> 1;
+      if (mid == this.next) {
+        return null;
+      } // if
+      Spliterator<Block> prefix = new BlockSpliterator(this.next, mid);
+      this.next = mid;
+      return prefix;
+    } // trySplit()
+
+    @Override
+    public long estimateSize() {
+      return this.to - this.next;
+    } // estimateSize()
+
+    @Override
+    public int characteristics() {
+      return ORDERED | SIZED | SUBSIZED | IMMUTABLE | NONNULL;
+    } // characteristics()
+  } // class BlockSpliterator
+
+  /**
+   * A spliterator over a range of transaction positions, split in half by
+   * position, that walks each block's transactions directly.
+   */
+  private class TransactionSpliterator implements Spliterator<Transaction> {
+    /**
+     * The position of the next transaction.
+     */
+    private int next;
+
+    /**
+     * The position just past the last transaction.
+     */
+    private final int end;
+
+    /**
+     * Which transactions to include (or null, for all of them).
+     */
+    private final Predicate<? super Transaction> keep;
+
+    /**
+     * The block that holds the next transaction (or null, until needed).
+     */
+    private Block blk;
+
+    /**
+     * The position of the first transaction in that block.
+     */
+    private int blkStart;
+
+    /**
+     * Create a spliterator over a range of positions.
+     *
+     * @param start The position of the first transaction.
+     * @param end The position just past the last transaction.
+     * @param keep Which transactions to include (or null, for all of them).
+     */
+    TransactionSpliterator(int start, int end, Predicate<? super Transaction> keep) {
+      this.next = start;
+      this.end = end;
+      this.keep = keep;
+    } // TransactionSpliterator(int, int, Predicate<? super Transaction>)
+
+    /**
+     * Find the block that holds the next transaction.
+     */
+    private void locate() {
+      if (this.blk == null || this.next - this.blkStart >= this.blk.transactions.length) {
+        int number = ChainView.this.blockContaining(this.next);
+        this.blk = ChainView.this.store.get(number);
+        this.blkStart = ChainView.this.firstPosition(number);
+      } // if
+    } // locate()
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Transaction> action) {
+      while (this.next < this.end) {
+        this.locate();
+        Transaction t = this.blk.transactions[this.next++ - this.blkStart];
+        if (this.keep == null || this.keep.test(t)) {
+          action.accept(t);
+          return true;
+        } // if
+      } // while
+      return false;
+    } // tryAdvance(Consumer<? super Transaction>)
+
+    @Override
+    public void forEachRemaining(Consumer<? super Transaction> action) {
+      while (this.next < this.end) {
+        this.locate();
+        Transaction[] ts = this.blk.transactions;
+        int stop = Math.min(ts.length, this.end - this.blkStart);
+        for (int i = this.next - this.blkStart; i < stop; i++) {
+          if (this.keep == null || this.keep.test(ts[i])) {
+            action.accept(ts[i]);
+          } // if
+        } // for
+        this.next = this.blkStart + stop;
+      } // while
+    } // forEachRemaining(Consumer<? super Transaction>)
+
+    @Override
+    public Spliterator<Transaction> trySplit() {
+      int mid = (this.next + this.end) >>> 1;
+      if (mid == this.next) {
+        return null;
+      } // if
+      Spliterator<Transaction> prefix = new TransactionSpliterator(this.next, mid, this.keep);
+      this.next = mid;
+      return prefix;
+    } // trySplit()
+
+    @Override
+    public long estimateSize() {
+      return this.end - this.next;
+    } // estimateSize()
+
+    @Override
+    public int characteristics() {
+      int sized = (this.keep == null) ? SIZED | SUBSIZED : 0;
+      return ORDERED | IMMUTABLE | NONNULL | sized;
+    } // characteristics()
+  } // class TransactionSpliterator
+} // class ChainView
@@ -0,0 +1,136 @@
+package edu.grinnell.csc207.blockchains;
+
+/**
+ * A validator that accepts hashes starting with at least a given number of
+ * zero bits. Each extra bit doubles the expected mining work, so the
+ * difficulty can be tuned far more finely than a whole number of zero
+ * bytes allows. Hashes are checked a word (eight bytes) at a time, and
+ * miners recognize this validator and check candidate hashes before they
+ * are even built.
+ *
+ * @author Sara Jaljaa
+ * @author Jenifer Silva
+ */
+public final class DifficultyValidator implements HashValidator {
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The number of leading zero bits a valid hash needs.
+   */
+  private final int bits;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a validator that requires a number of leading zero bits.
+   *
+   * @param bits
+   *    The number of bits, between 0 and 8 * Hash.MAX_BYTES (inclusive).
+   *
+   * @throws IllegalArgumentException
+   *    If bits is out of range.
+   */
+  public DifficultyValidator(int bits) {
+    if (bits < 0 || bits > 8 * Hash.MAX_BYTES) {
+      throw new IllegalArgumentException("difficulty must be between 0 and "
+          + (8 * Hash.MAX_BYTES) + " bits");
+    } // if
+    this.bits = bits;
+  } // DifficultyValidator(int)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Get the number of leading zero bits a valid hash needs.
+   *
+   * @return the number of bits.
+   */
+  public int getBits() {
+    return this.bits;
+  } // getBits()
+
+  /**
+   * Determine if a hash starts with enough zero bits.
+   *
+   * @param hash
+   *    The hash we're checking.
+   *
+   * @return true if the hash is valid and false otherwise.
+   */
+  @Override
+  public boolean isValid(Hash hash) {
+    return 8 * hash.length() >= this.bits && leadingZeroBits(hash) >= this.bits;
+  } // isValid(Hash)
+
+  /**
+   * Determine if a full-length hash, given as its words, starts with
+   * enough zero bits, without building the hash.
+   *
+   * @param w0
+   *    The first eight bytes of the hash.
+   * @param w1
+   *    The next eight bytes.
+   * @param w2
+   *    The next eight bytes.
+   * @param w3
+   *    The last eight bytes.
+   *
+   * @return true if the hash is valid and false otherwise.
+   */
+  @Override
+  public boolean isValid(long w0, long w1, long w2, long w3) {
+    int zeros = Long.numberOfLeadingZeros(w0);
+    if (w0 == 0) {
+      zeros += Long.numberOfLeadingZeros(w1);
+      if (w1 == 0) {
+        zeros += Long.numberOfLeadingZeros(w2);
+        if (w2 == 0) {
+          zeros += Long.numberOfLeadingZeros(w3);
+        } // if
+      } // if
+    } // if
+    return zeros >= this.bits;
+  } // isValid(long, long, long, long)
+
+  /**
+   * Convert to a string.
+   *
+   * @return a string of the form "DifficultyValidator(bits)".
+   */
+  @Override
+  public String toString() {
+    return "DifficultyValidator(" + this.bits + ")";
+  } // toString()
+
+  // +----------------+----------------------------------------------
+  // | Static Methods |
+  // +----------------+
+
+  /**
+   * Count the zero bits at the start of a hash.
+   *
+   * @param hash
+   *    The hash.
+   *
+   * @return the number of leading zero bits (8 * hash.length(), if every
+   *    bit is zero).
+   */
+  public static int leadingZeroBits(Hash hash) {
+    int zeros = 0;
+    for (int i = 0; i < 4; i++) {
+      long word = hash.word(i);
+      zeros += Long.numberOfLeadingZeros(word);
+      if (word != 0) {
+        break;
+      } // if
+    } // for
+    return Math.min(zeros, 8 * hash.length());
+  } // leadingZeroBits(Hash)
+} // class DifficultyValidator
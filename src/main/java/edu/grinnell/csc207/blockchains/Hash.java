@@ -1,9 +1,15 @@
 package edu.grinnell.csc207.blockchains;
 
-import java.util.Arrays;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 /**
- * Encapsulated hashes.
+ * Encapsulated hashes. A hash holds up to 256 bits (enough for SHA-256),
+ * packed big-endian into four longs, so comparing hashes never allocates.
+ * The hash code is computed from the bits once and the hex form is built
+ * only when someone asks for it.
+ *
+ * Hashes are immutable, so they may be shared between threads freely.
  *
  * @author Sara Jaljaa
  * @author Jenifer Silva
@@ -11,14 +17,59 @@ import java.util.Arrays;
  */
 public class Hash {
 
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The largest number of bytes in a hash.
+   */
+  public static final int MAX_BYTES = 4 * Long.BYTES;
+
+  /**
+   * The hex digits.
+   */
+  private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
   // +--------+------------------------------------------------------
   // | Fields |
   // +--------+
 
   /**
-   * The data to be hashed.
+   * The first eight bytes (zero past the end of the hash).
+   */
+  private final long w0;
+
+  /**
+   * The next eight bytes.
+   */
+  private final long w1;
+
+  /**
+   * The next eight bytes.
+   */
+  private final long w2;
+
+  /**
+   * The last eight bytes.
+   */
+  private final long w3;
+
+  /**
+   * The number of bytes in the hash.
+   */
+  private final int length;
+
+  /**
+   * The hash code, computed from the bits.
    */
-  private byte[] data;
+  private final int code;
+
+  /**
+   * The hex form (or null, if it has not been built yet). Threads that
+   * race to build it build equal strings, so no lock is needed.
+   */
+  private String hex;
 
   // +--------------+------------------------------------------------
   // | Constructors |
@@ -28,11 +79,82 @@ public class Hash {
    * Create a new encapsulated hash.
    *
    * @param data The data to copy into the hash.
+   *
+   * @throws IllegalArgumentException If data has more than MAX_BYTES bytes.
    */
   public Hash(byte[] data) {
-    this.data = Arrays.copyOf(data, data.length);
+    this(checkLength(data).length, pack(data, 0), pack(data, 1), pack(data, 2), pack(data, 3));
   } // Hash(byte[])
 
+  /**
+   * Create a hash from its words.
+   *
+   * @param length The number of bytes in the hash.
+   * @param w0 The first eight bytes.
+   * @param w1 The next eight bytes.
+   * @param w2 The next eight bytes.
+   * @param w3 The last eight bytes.
+   */
+  Hash(int length, long w0, long w1, long w2, long w3) {
+    this.length = length;
+    this.w0 = w0;
+    this.w1 = w1;
+    this.w2 = w2;
+    this.w3 = w3;
+    this.code = Long.hashCode(((w0 * 31 + w1) * 31 + w2) * 31 + w3) * 31 + length;
+  } // Hash(int, long, long, long, long)
+
+  // +----------------+----------------------------------------------
+  // | Static Methods |
+  // +----------------+
+
+  /**
+   * Make sure some data fits in a hash.
+   *
+   * @param data The data.
+   *
+   * @return the data.
+   *
+   * @throws IllegalArgumentException If data has more than MAX_BYTES bytes.
+   */
+  private static byte[] checkLength(byte[] data) {
+    if (data.length > MAX_BYTES) {
+      throw new IllegalArgumentException("hashes have at most " + MAX_BYTES + " bytes");
+    } // if
+    return data;
+  } // checkLength(byte[])
+
+  /**
+   * Pack eight bytes of some data into a word, big-endian.
+   *
+   * @param data The data.
+   * @param i Which eight bytes, between 0 (inclusive) and 4 (exclusive).
+   *
+   * @return bytes 8i through 8i+7 of the data (zero past its end).
+   */
+  private static long pack(byte[] data, int i) {
+    long word = 0;
+    for (int j = 8 * i; j < Math.min(8 * i + 8, data.length); j++) {
+      word |= (data[j] & 0xffL) << (56 - 8 * (j & 7));
+    } // for
+    return word;
+  } // pack(byte[], int)
+
+  /**
+   * Read a full-length hash from a buffer without moving its position.
+   *
+   * @param in The buffer.
+   * @param offset Where the hash starts.
+   *
+   * @return the hash.
+   */
+  static Hash readFrom(ByteBuffer in, int offset) {
+    ByteBuffer big = (in.order() == ByteOrder.BIG_ENDIAN) ? in : in.duplicate();
+    big.order(ByteOrder.BIG_ENDIAN);
+    return new Hash(MAX_BYTES, big.getLong(offset), big.getLong(offset + 8),
+        big.getLong(offset + 16), big.getLong(offset + 24));
+  } // readFrom(ByteBuffer, int)
+
   // +---------+-----------------------------------------------------
   // | Methods |
   // +---------+
@@ -43,7 +165,7 @@ public class Hash {
    * @return the number of bytes in the hash.
    */
   public int length() {
-    return this.data.length;
+    return this.length;
   } // length()
 
   /**
@@ -52,9 +174,14 @@ public class Hash {
    * @param i The index of the byte to get, between 0 (inclusive) and length() (exclusive).
    *
    * @return the ith byte
+   *
+   * @throws IndexOutOfBoundsException If i is not a valid index.
    */
   public byte get(int i) {
-    return this.data[i];
+    if (i < 0 || i >= this.length) {
+      throw new IndexOutOfBoundsException(i);
+    } // if
+    return (byte) (this.word(i >>> 3) >>> (56 - 8 * (i & 7)));
   } // get()
 
   /**
@@ -64,26 +191,44 @@ public class Hash {
    * @return a copy of the bytes in the hash.
    */
   public byte[] getBytes() {
-    if (this.data == null) {
-      return new byte[0];
-    } // if
-    return Arrays.copyOf(this.data, this.data.length);
+    byte[] bytes = new byte[this.length];
+    for (int i = 0; i < this.length; i++) {
+      bytes[i] = this.get(i);
+    } // for
+    return bytes;
   } // getBytes()
 
+  /**
+   * Put the bytes of the hash into a buffer, without making a copy.
+   *
+   * @param out The buffer.
+   */
+  public void writeTo(ByteBuffer out) {
+    if (this.length == MAX_BYTES && out.order() == ByteOrder.BIG_ENDIAN) {
+      out.putLong(this.w0).putLong(this.w1).putLong(this.w2).putLong(this.w3);
+    } else {
+      for (int i = 0; i < this.length; i++) {
+        out.put(this.get(i));
+      } // for
+    } // if/else
+  } // writeTo(ByteBuffer)
+
   /**
    * Convert to a hex string.
    *
    * @return the hash as a hex string.
    */
   public String toString() {
-    StringBuilder hexString = new StringBuilder();
-    if (this.data.equals(null)) {
-      return null;
+    if (this.hex == null) {
+      char[] digits = new char[2 * this.length];
+      for (int i = 0; i < this.length; i++) {
+        byte b = this.get(i);
+        digits[2 * i] = HEX[(b >>> 4) & 0xf];
+        digits[2 * i + 1] = HEX[b & 0xf];
+      } // for
+      this.hex = new String(digits);
     } // if
-    for (int i = 0; i < this.data.length; i++) {
-      hexString.append(String.format("%02X", this.data[i]));
-    } // for
-    return new String(hexString);
+    return this.hex;
   } // toString()
 
   /**
@@ -94,8 +239,12 @@ public class Hash {
    * @return true if the two objects are conceptually equal and false otherwise.
    */
   public boolean equals(Object other) {
-    return (other instanceof Hash)
-        && Arrays.equals(((Hash) other).data, this.getBytes());
+    if (!(other instanceof Hash)) {
+      return false;
+    } // if
+    Hash hash = (Hash) other;
+    return this.length == hash.length && this.w0 == hash.w0 && this.w1 == hash.w1
+        && this.w2 == hash.w2 && this.w3 == hash.w3;
   } // equals(Object)
 
   /**
@@ -104,6 +253,42 @@ public class Hash {
    * @return the hash code.
    */
   public int hashCode() {
-    return this.toString().hashCode();
+    return this.code;
   } // hashCode()
+
+  // +-----------------+---------------------------------------------
+  // | Package Methods |
+  // +-----------------+
+
+  /**
+   * Get eight of the bytes, packed big-endian.
+   *
+   * @param i Which eight bytes, between 0 (inclusive) and 4 (exclusive).
+   *
+   * @return bytes 8i through 8i+7 (zero past the end of the hash).
+   */
+  long word(int i) {
+    switch (i) {
+      case 0:
+        return this.w0;
+      case 1:
+        return this.w1;
+      case 2:
+        return this.w2;
+      default:
+        return this.w3;
+    } // switch
+  } // word(int)
+
+  /**
+   * Copy the bytes of the hash into an array.
+   *
+   * @param dest Where to copy the bytes.
+   * @param pos The index in dest of the first byte.
+   */
+  void copyTo(byte[] dest, int pos) {
+    for (int i = 0; i < this.length; i++) {
+      dest[pos + i] = (byte) (this.word(i >>> 3) >>> (56 - 8 * (i & 7)));
+    } // for
+  } // copyTo(byte[], int)
 } // class Hash
@@ -0,0 +1,190 @@
+package edu.grinnell.csc207.blockchains;
+
+/**
+ * An index of blocks by hash. Blocks live in an open-addressing table
+ * (linear probing) next to their hash codes, so a lookup compares cached
+ * hash codes first and only compares full hashes on a match.
+ *
+ * @author Sara Jaljaa
+ * @author Jenifer Silva
+ */
+final class HashIndex {
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The default capacity of the table (a power of two).
+   */
+  static final int DEFAULT_CAPACITY = 16;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The blocks, indexed by slot (null for an empty slot).
+   */
+  private Block[] blocks;
+
+  /**
+   * The hash codes of the blocks' hashes, indexed by slot.
+   */
+  private int[] codes;
+
+  /**
+   * The number of blocks in the index.
+   */
+  private int size;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new, empty index.
+   */
+  HashIndex() {
+    this.blocks = new Block[DEFAULT_CAPACITY];
+    this.codes = new int[DEFAULT_CAPACITY];
+    this.size = 0;
+  } // HashIndex()
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Add a block to the index. If another block has the same hash, the
+   * new block replaces it.
+   *
+   * @param blk
+   *    The block.
+   */
+  void add(Block blk) {
+    Hash hash = blk.getHash();
+    int slot = this.find(hash);
+    if (this.blocks[slot] == null) {
+      if (3 * (this.size + 1) > 2 * this.blocks.length) {
+        this.expand();
+        slot = this.find(hash);
+      } // if
+      this.size++;
+    } // if
+    this.blocks[slot] = blk;
+    this.codes[slot] = hash.hashCode();
+  } // add(Block)
+
+  /**
+   * Find the block with a hash.
+   *
+   * @param hash
+   *    The hash.
+   * @return
+   *    The block, or null if no block in the index has that hash.
+   */
+  Block get(Hash hash) {
+    return this.blocks[this.find(hash)];
+  } // get(Hash)
+
+  /**
+   * Remove a block from the index. If the block is not in the index,
+   * does nothing.
+   *
+   * @param blk
+   *    The block.
+   */
+  void remove(Block blk) {
+    int mask = this.blocks.length - 1;
+    int hole = this.find(blk.getHash());
+    if (this.blocks[hole] != blk) {
+      return;
+    } // if
+
+    /* Shift later members of the probe sequence back into the hole */
+    int slot = hole;
+    while (true) {
+      slot = (slot + 1) & mask;
+      if (this.blocks[slot] == null) {
+        break;
+      } // if
+      int home = spread(this.codes[slot]) & mask;
+      if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+        this.blocks[hole] = this.blocks[slot];
+        this.codes[hole] = this.codes[slot];
+        hole = slot;
+      } // if
+    } // while
+    this.blocks[hole] = null;
+    this.size--;
+  } // remove(Block)
+
+  /**
+   * Determine how many blocks are in the index.
+   *
+   * @return
+   *    The number of blocks.
+   */
+  int size() {
+    return this.size;
+  } // size()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Spread the bits of a hash code.
+   *
+   * @param code
+   *    The hash code.
+   * @return
+   *    The spread hash code.
+   */
+  private static int spread(int code) {
+    int h = code * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  } // spread(int)
+
+  /**
+   * Find the slot that holds the block with a hash or, if there is no
+   * such block, the empty slot where it would go.
+   *
+   * @param hash
+   *    The hash.
+   * @return
+   *    The slot.
+   */
+  private int find(Hash hash) {
+    int code = hash.hashCode();
+    int mask = this.blocks.length - 1;
+    int slot = spread(code) & mask;
+    while (this.blocks[slot] != null
+        && (this.codes[slot] != code || !this.blocks[slot].getHash().equals(hash))) {
+      slot = (slot + 1) & mask;
+    } // while
+    return slot;
+  } // find(Hash)
+
+  /**
+   * Double the capacity of the table.
+   */
+  private void expand() {
+    Block[] oldBlocks = this.blocks;
+    int[] oldCodes = this.codes;
+    this.blocks = new Block[oldBlocks.length * 2];
+    this.codes = new int[oldBlocks.length * 2];
+    int mask = this.blocks.length - 1;
+    for (int i = 0; i < oldBlocks.length; i++) {
+      if (oldBlocks[i] != null) {
+        int slot = spread(oldCodes[i]) & mask;
+        while (this.blocks[slot] != null) {
+          slot = (slot + 1) & mask;
+        } // while
+        this.blocks[slot] = oldBlocks[i];
+        this.codes[slot] = oldCodes[i];
+      } // if
+    } // for
+  } // expand()
+} // class HashIndex
@@ -16,4 +16,27 @@ public interface HashValidator {
    */
   boolean isValid(Hash hash);
 
+  /**
+   * Determine if a full-length hash (of Hash.MAX_BYTES bytes), given as
+   * four words packed big-endian (so w0 holds bytes 0 through 7), meets
+   * the criterion. Miners call this for every nonce they try. By default it
+   * builds a Hash and calls isValid(Hash), which allocates once per nonce;
+   * validators that can decide from the words should override it, so that
+   * mining with them allocates nothing.
+   *
+   * @param w0
+   *   The first eight bytes of the hash.
+   * @param w1
+   *   The next eight bytes.
+   * @param w2
+   *   The next eight bytes.
+   * @param w3
+   *   The last eight bytes.
+   *
+   * @return true if the hash is valid and false otherwise.
+   */
+  default boolean isValid(long w0, long w1, long w2, long w3) {
+    return this.isValid(new Hash(Hash.MAX_BYTES, w0, w1, w2, w3));
+  } // isValid(long, long, long, long)
+
 } // interface HashValidator
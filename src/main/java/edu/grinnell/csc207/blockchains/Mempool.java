@@ -0,0 +1,145 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.function.Predicate;
+
+/**
+ * A pool of transactions waiting to be mined into a block, oldest first.
+ * A chain takes a batch of transactions from the pool for each block it
+ * mines; transactions that cannot be used yet (say, because their source
+ * cannot afford them) stay in the pool, in order, for later blocks.
+ *
+ * Pools are safe to use from several threads.
+ *
+ * @author Sara Jaljaa
+ * @author Jenifer Silva
+ */
+public class Mempool {
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The waiting transactions, oldest first.
+   */
+  private final ArrayDeque<Transaction> waiting;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new, empty pool.
+   */
+  public Mempool() {
+    this.waiting = new ArrayDeque<Transaction>();
+  } // Mempool()
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Add a transaction to the pool.
+   *
+   * @param t
+   *    The transaction.
+   *
+   * @throws IllegalArgumentException
+   *    If the amount of the transaction is negative, so that it could
+   *    never be mined.
+   */
+  public synchronized void add(Transaction t) {
+    if (t.getAmount() < 0) {
+      throw new IllegalArgumentException("transactions may not have negative amounts");
+    } // if
+    this.waiting.addLast(t);
+  } // add(Transaction)
+
+  /**
+   * Determine how many transactions are waiting.
+   *
+   * @return the number of transactions.
+   */
+  public synchronized int size() {
+    return this.waiting.size();
+  } // size()
+
+  /**
+   * Determine if no transactions are waiting.
+   *
+   * @return true if the pool is empty and false otherwise.
+   */
+  public synchronized boolean isEmpty() {
+    return this.waiting.isEmpty();
+  } // isEmpty()
+
+  /**
+   * Drop the oldest transactions, so that at most max stay waiting. Use
+   * this to shed transactions that have waited too long to be afforded.
+   *
+   * @param max
+   *    The most transactions to keep.
+   * @return
+   *    The transactions dropped, oldest first.
+   *
+   * @throws IllegalArgumentException
+   *    If max is negative.
+   */
+  public synchronized Transaction[] trim(int max) {
+    if (max < 0) {
+      throw new IllegalArgumentException("cannot keep fewer than zero transactions");
+    } // if
+    Transaction[] dropped = new Transaction[Math.max(0, this.waiting.size() - max)];
+    for (int i = 0; i < dropped.length; i++) {
+      dropped[i] = this.waiting.removeFirst();
+    } // for
+    return dropped;
+  } // trim(int)
+
+  /**
+   * Remove up to max transactions from the pool, oldest first, skipping
+   * (and leaving in the pool) any that the filter rejects. The filter is
+   * called on each transaction in turn, so it may keep track of the ones
+   * it has accepted.
+   *
+   * @param max
+   *    The most transactions to remove.
+   * @param accept
+   *    Decides whether each transaction can be used now.
+   * @return
+   *    The transactions removed, oldest first.
+   */
+  synchronized Transaction[] take(int max, Predicate<Transaction> accept) {
+    ArrayList<Transaction> taken = new ArrayList<Transaction>();
+    ArrayList<Transaction> skipped = new ArrayList<Transaction>();
+    while (taken.size() < max && !this.waiting.isEmpty()) {
+      Transaction t = this.waiting.removeFirst();
+      if (accept.test(t)) {
+        taken.add(t);
+      } else {
+        skipped.add(t);
+      } // if/else
+    } // while
+    /* Put back the skipped ones, which costs no more than looking at them did */
+    for (int i = skipped.size() - 1; i >= 0; i--) {
+      this.waiting.addFirst(skipped.get(i));
+    } // for
+    return taken.toArray(new Transaction[taken.size()]);
+  } // take(int, Predicate<Transaction>)
+
+  /**
+   * Put transactions that were taken but not mined back at the front of
+   * the pool, in their original order.
+   *
+   * @param transactions
+   *    The transactions, oldest first.
+   */
+  synchronized void restore(Transaction[] transactions) {
+    for (int i = transactions.length - 1; i >= 0; i--) {
+      this.waiting.addFirst(transactions[i]);
+    } // for
+  } // restore(Transaction[])
+} // class Mempool
@@ -0,0 +1,124 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.security.MessageDigest;
+
+/**
+ * A proof that a transaction is in a block: the siblings of the nodes on
+ * the path from the transaction's leaf up to the block's Merkle root. A
+ * client that trusts the root can check the proof with one hash per level,
+ * without the rest of the block's transactions. Since the root covers the
+ * number of transactions, a proof that checks also shows the index and
+ * count it reports.
+ *
+ * @author Sara Jaljaa
+ * @author Jenifer Silva
+ */
+public final class MerkleProof {
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The index of the transaction in its block.
+   */
+  private final int index;
+
+  /**
+   * The number of transactions in the block.
+   */
+  private final int count;
+
+  /**
+   * The siblings, from the leaves up.
+   */
+  private final Hash[] siblings;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a proof.
+   *
+   * @param index
+   *    The index of the transaction in its block.
+   * @param count
+   *    The number of transactions in the block.
+   * @param siblings
+   *    The siblings, from the leaves up (nodes without a partner have
+   *    none).
+   */
+  MerkleProof(int index, int count, Hash[] siblings) {
+    this.index = index;
+    this.count = count;
+    this.siblings = siblings;
+  } // MerkleProof(int, int, Hash[])
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Get the index of the transaction in its block.
+   *
+   * @return the index.
+   */
+  public int getIndex() {
+    return this.index;
+  } // getIndex()
+
+  /**
+   * Get the number of transactions in the block.
+   *
+   * @return the number of transactions.
+   */
+  public int getCount() {
+    return this.count;
+  } // getCount()
+
+  /**
+   * Determine how many sibling hashes the proof holds.
+   *
+   * @return the number of siblings.
+   */
+  public int length() {
+    return this.siblings.length;
+  } // length()
+
+  /**
+   * Determine if the proof shows that a transaction is in a block with a
+   * given Merkle root.
+   *
+   * @param t
+   *    The transaction.
+   * @param root
+   *    The block's Merkle root.
+   * @return
+   *    true if the index is within the count and hashing the transaction
+   *    up the proof's path gives the root, and false otherwise.
+   */
+  public boolean verify(Transaction t, Hash root) {
+    if (this.index < 0 || this.index >= this.count) {
+      return false;
+    } // if
+    MessageDigest md = MerkleTree.digest();
+    byte[] node = MerkleTree.leaf(md, t);
+    int i = this.index;
+    int next = 0;
+    for (int size = this.count; size > 1; size = (size + 1) / 2) {
+      if ((i ^ 1) < size) {
+        if (next == this.siblings.length) {
+          return false;
+        } // if
+        byte[] sibling = this.siblings[next++].getBytes();
+        node = ((i & 1) == 0)
+            ? MerkleTree.node(md, node, sibling)
+            : MerkleTree.node(md, sibling, node);
+      } // if
+      i >>>= 1;
+    } // for
+    return next == this.siblings.length
+        && root.equals(new Hash(MerkleTree.bind(md, this.count, node)));
+  } // verify(Transaction, Hash)
+} // class MerkleProof
@@ -0,0 +1,376 @@
+package edu.grinnell.csc207.blockchains;
+
+import edu.grinnell.csc207.util.UserDictionary;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A Merkle tree over the transactions in a block. Each transaction is
+ * hashed into a leaf; pairs of nodes are then hashed together, level by
+ * level, until one node (the root) remains. A node without a partner is
+ * carried up to the next level unchanged. Leaves and interior nodes are
+ * hashed with different one-byte prefixes, so a leaf can never pass for an
+ * interior node. The root hashes the number of leaves along with the top
+ * node, so a proof also pins down the size of the block and the position
+ * of its transaction.
+ *
+ * A leaf hashes the transaction's source and target (each as an int
+ * length followed by its UTF-8 bytes) and then its amount.
+ *
+ * Every level of the tree is kept, so proofs that a transaction is in the
+ * tree take no hashing at all. Large levels are hashed in parallel.
+ *
+ * @author Sara Jaljaa
+ * @author Jenifer Silva
+ */
+public final class MerkleTree {
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The prefix of a leaf.
+   */
+  static final byte LEAF = 0;
+
+  /**
+   * The prefix of an interior node.
+   */
+  static final byte NODE = 1;
+
+  /**
+   * The prefix of the root.
+   */
+  static final byte ROOT = 2;
+
+  /**
+   * The largest range of nodes that one task hashes without splitting.
+   */
+  static final int PARALLEL_THRESHOLD = 512;
+
+  /**
+   * One digest per thread.
+   */
+  private static final ThreadLocal<MessageDigest> DIGESTS = ThreadLocal.withInitial(() -> {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("every Java platform supports SHA-256", e);
+    } // try/catch
+  });
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The nodes, level by level, from the leaves (level 0) up to the root.
+   */
+  private final byte[][][] levels;
+
+  /**
+   * The root (the only node in the last level, bound to the number of
+   * leaves).
+   */
+  private final Hash root;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Build the tree over some transactions.
+   *
+   * @param transactions
+   *    The transactions, in block order.
+   *
+   * @throws IllegalArgumentException
+   *    If there are no transactions.
+   */
+  public MerkleTree(Transaction[] transactions) {
+    if (transactions.length == 0) {
+      throw new IllegalArgumentException("a Merkle tree needs at least one transaction");
+    } // if
+    int height = 1;
+    for (int size = transactions.length; size > 1; size = (size + 1) / 2) {
+      height++;
+    } // for
+    this.levels = new byte[height][][];
+    this.levels[0] = new byte[transactions.length][];
+    hashLevel(new LevelTask(transactions, null, this.levels[0], 0, transactions.length));
+    for (int level = 1; level < height; level++) {
+      byte[][] below = this.levels[level - 1];
+      this.levels[level] = new byte[(below.length + 1) / 2][];
+      hashLevel(new LevelTask(null, below, this.levels[level], 0, this.levels[level].length));
+    } // for
+    this.root = new Hash(bind(digest(), transactions.length, this.levels[height - 1][0]));
+  } // MerkleTree(Transaction[])
+
+  // +----------------+----------------------------------------------
+  // | Static Methods |
+  // +----------------+
+
+  /**
+   * Compute the Merkle root of some transactions.
+   *
+   * @param transactions
+   *    The transactions, at least one.
+   * @return
+   *    The root.
+   */
+  static Hash root(Transaction[] transactions) {
+    return new MerkleTree(transactions).getRoot();
+  } // root(Transaction[])
+
+  /**
+   * Get this thread's digest.
+   *
+   * @return
+   *    A digest, ready for use.
+   */
+  static MessageDigest digest() {
+    MessageDigest md = DIGESTS.get();
+    md.reset();
+    return md;
+  } // digest()
+
+  /**
+   * Hash one transaction into a leaf.
+   *
+   * @param md
+   *    The digest to use.
+   * @param t
+   *    The transaction.
+   * @return
+   *    The leaf.
+   */
+  static byte[] leaf(MessageDigest md, Transaction t) {
+    UserDictionary dict = UserDictionary.global();
+    int srcLength = dict.encodedLength(t.getSourceId());
+    int tgtLength = dict.encodedLength(t.getTargetId());
+    byte[] bytes = new byte[1 + 3 * Integer.BYTES + srcLength + tgtLength];
+    bytes[0] = LEAF;
+    int pos = putInt(bytes, 1, srcLength);
+    pos = dict.copyEncoded(t.getSourceId(), bytes, pos);
+    pos = putInt(bytes, pos, tgtLength);
+    pos = dict.copyEncoded(t.getTargetId(), bytes, pos);
+    putInt(bytes, pos, t.getAmount());
+    return md.digest(bytes);
+  } // leaf(MessageDigest, Transaction)
+
+  /**
+   * Hash two nodes into their parent.
+   *
+   * @param md
+   *    The digest to use.
+   * @param left
+   *    The left child.
+   * @param right
+   *    The right child.
+   * @return
+   *    The parent.
+   */
+  static byte[] node(MessageDigest md, byte[] left, byte[] right) {
+    md.update(NODE);
+    md.update(left);
+    md.update(right);
+    return md.digest();
+  } // node(MessageDigest, byte[], byte[])
+
+  /**
+   * Hash the top node of a tree, along with its number of leaves, into
+   * the root.
+   *
+   * @param md
+   *    The digest to use.
+   * @param count
+   *    The number of leaves.
+   * @param top
+   *    The top node.
+   * @return
+   *    The root.
+   */
+  static byte[] bind(MessageDigest md, int count, byte[] top) {
+    byte[] bytes = new byte[1 + Integer.BYTES];
+    bytes[0] = ROOT;
+    putInt(bytes, 1, count);
+    md.update(bytes);
+    md.update(top);
+    return md.digest();
+  } // bind(MessageDigest, int, byte[])
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Get the root of the tree.
+   *
+   * @return the root.
+   */
+  public Hash getRoot() {
+    return this.root;
+  } // getRoot()
+
+  /**
+   * Determine how many transactions (leaves) are in the tree.
+   *
+   * @return the number of leaves.
+   */
+  public int size() {
+    return this.levels[0].length;
+  } // size()
+
+  /**
+   * Build a proof that one of the transactions is in the tree. The proof
+   * holds one sibling per level (fewer, where a node has no partner), so
+   * it grows with the log of the number of transactions.
+   *
+   * @param i
+   *    The index of the transaction, between 0 (inclusive) and size()
+   *    (exclusive).
+   * @return
+   *    The proof.
+   *
+   * @throws IndexOutOfBoundsException
+   *    If i is not a valid index.
+   */
+  public MerkleProof prove(int i) {
+    if (i < 0 || i >= this.size()) {
+      throw new IndexOutOfBoundsException(i);
+    } // if
+    Hash[] siblings = new Hash[this.levels.length - 1];
+    int count = 0;
+    int index = i;
+    for (int level = 0; level < this.levels.length - 1; level++) {
+      int partner = index ^ 1;
+      if (partner < this.levels[level].length) {
+        siblings[count++] = new Hash(this.levels[level][partner]);
+      } // if
+      index >>>= 1;
+    } // for
+    return new MerkleProof(i, this.size(), Arrays.copyOf(siblings, count));
+  } // prove(int)
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Hash one level of the tree, in parallel if it is large.
+   *
+   * @param task
+   *    The task that hashes the whole level.
+   */
+  private static void hashLevel(LevelTask task) {
+    if (task.to - task.from <= PARALLEL_THRESHOLD) {
+      task.compute();
+    } else {
+      ForkJoinPool.commonPool().invoke(task);
+    } // if/else
+  } // hashLevel(LevelTask)
+
+  /**
+   * Store an int, big-endian.
+   *
+   * @param bytes
+   *    Where to store the int.
+   * @param pos
+   *    The index of the first byte.
+   * @param val
+   *    The int.
+   * @return
+   *    The index just after the int.
+   */
+  private static int putInt(byte[] bytes, int pos, int val) {
+    bytes[pos] = (byte) (val >>> 24);
+    bytes[pos + 1] = (byte) (val >>> 16);
+    bytes[pos + 2] = (byte) (val >>> 8);
+    bytes[pos + 3] = (byte) val;
+    return pos + Integer.BYTES;
+  } // putInt(byte[], int, int)
+
+  // +---------------+-----------------------------------------------
+  // | Inner Classes |
+  // +---------------+
+
+  /**
+   * A task that hashes a range of the nodes in one level, splitting large
+   * ranges in half.
+   */
+  private static class LevelTask extends RecursiveAction {
+    /**
+     * The version of the serialized form.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The transactions, when hashing leaves (or null).
+     */
+    private final Transaction[] transactions;
+
+    /**
+     * The level below, when hashing interior nodes (or null).
+     */
+    private final byte[][] below;
+
+    /**
+     * Where the nodes go.
+     */
+    private final byte[][] out;
+
+    /**
+     * The index of the first node to hash.
+     */
+    private final int from;
+
+    /**
+     * The index just past the last node to hash.
+     */
+    private final int to;
+
+    /**
+     * Create a task.
+     *
+     * @param transactions The transactions, when hashing leaves (or null).
+     * @param below The level below, when hashing interior nodes (or null).
+     * @param out Where the nodes go.
+     * @param from The index of the first node to hash.
+     * @param to The index just past the last node to hash.
+     */
+    LevelTask(Transaction[] transactions, byte[][] below, byte[][] out, int from, int to) {
+      this.transactions = transactions;
+      this.below = below;
+      this.out = out;
+      this.from = from;
+      this.to = to;
+    } // LevelTask(Transaction[], byte[][], byte[][], int, int)
+
+    /**
+     * Hash the range.
+     */
+    @Override
+    protected void compute() {
+      if (this.to - this.from > PARALLEL_THRESHOLD) {
+        int mid = (this.from + this.to) >>> 1;
+        invokeAll(new LevelTask(this.transactions, this.below, this.out, this.from, mid),
+            new LevelTask(this.transactions, this.below, this.out, mid, this.to));
+        return;
+      } // if
+      MessageDigest md = digest();
+      for (int i = this.from; i < this.to; i++) {
+        if (this.transactions != null) {
+          this.out[i] = leaf(md, this.transactions[i]);
+        } else if (2 * i + 1 < this.below.length) {
+          this.out[i] = node(md, this.below[2 * i], this.below[2 * i + 1]);
+        } else {
+          this.out[i] = this.below[2 * i];
+        } // if/else
+      } // for
+    } // compute()
+  } // class LevelTask
+} // class MerkleTree
@@ -0,0 +1,323 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * A mining engine that searches the nonce space with a pool of worker
+ * threads. Workers claim consecutive chunks of nonces in increasing order
+ * and stop as soon as every chunk below the best nonce found so far has been
+ * searched, so the result is always the lowest valid nonce (the same nonce a
+ * single-threaded search would find).
+ *
+ * @author Sara Jaljaa
+ * @author Jenifer Silva
+ */
+public class Miner {
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The number of nonces a worker claims at a time.
+   */
+  static final long CHUNK_SIZE = 1L << 12;
+
+  /**
+   * The miner shared by blocks and chains that do not specify one.
+   */
+  private static Miner defaultMiner = null;
+
+  /**
+   * One hasher per mining thread. The hasher is reset once per block and
+   * then reused for every nonce, so the search itself does not allocate
+   * (unless the validator needs a Hash for each nonce: see
+   * HashValidator.isValid(long, long, long, long)).
+   */
+  private static final ThreadLocal<BlockHasher> HASHERS =
+      ThreadLocal.withInitial(BlockHasher::new);
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The number of worker threads.
+   */
+  private final int threads;
+
+  /**
+   * The worker threads (or null, if we mine on the calling thread).
+   */
+  private final ExecutorService pool;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new miner that uses the specified number of worker threads.
+   *
+   * @param threads
+   *    The number of worker threads; 1 mines on the calling thread.
+   *
+   * @throws IllegalArgumentException
+   *    If threads is less than 1.
+   */
+  public Miner(int threads) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("a miner needs at least one thread");
+    } // if
+    this.threads = threads;
+    if (threads == 1) {
+      this.pool = null;
+    } else {
+      this.pool = Executors.newFixedThreadPool(threads, (r) -> {
+        Thread worker = new Thread(r, "miner");
+        worker.setDaemon(true);
+        return worker;
+      });
+    } // if/else
+  } // Miner(int)
+
+  // +----------------+----------------------------------------------
+  // | Static Methods |
+  // +----------------+
+
+  /**
+   * Get the shared miner, which uses one thread per available processor.
+   *
+   * @return the shared miner.
+   */
+  public static synchronized Miner defaultMiner() {
+    if (defaultMiner == null) {
+      defaultMiner = new Miner(Runtime.getRuntime().availableProcessors());
+    } // if
+    return defaultMiner;
+  } // defaultMiner()
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Get the number of worker threads.
+   *
+   * @return the number of worker threads.
+   */
+  public int getThreads() {
+    return this.threads;
+  } // getThreads()
+
+  /**
+   * Find the lowest nonce that gives a block a valid hash.
+   *
+   * @param num
+   *    The number of the block.
+   * @param transaction
+   *    The transaction for the block.
+   * @param prevHash
+   *    The hash of the previous block.
+   * @param check
+   *    The validator used to check the block; it must be safe to call
+   *    from several threads at once.
+   * @return
+   *    The mined nonce value.
+   *
+   * @throws NoSuchAlgorithmException
+   *    When no nonce gives a valid hash.
+   */
+  public long mine(int num, Transaction transaction, Hash prevHash,
+      HashValidator check) throws NoSuchAlgorithmException {
+    return this.mine(num, transaction, prevHash, 0, 0, check);
+  } // mine(int, Transaction, Hash, HashValidator)
+
+  /**
+   * Find the lowest nonce that gives a block that records a difficulty
+   * and a timestamp a valid hash.
+   *
+   * @param num
+   *    The number of the block.
+   * @param transaction
+   *    The transaction for the block.
+   * @param prevHash
+   *    The hash of the previous block.
+   * @param difficulty
+   *    The difficulty the block records (or 0).
+   * @param timestamp
+   *    The time the block records (or 0).
+   * @param check
+   *    The validator used to check the block; it must be safe to call
+   *    from several threads at once.
+   * @return
+   *    The mined nonce value.
+   *
+   * @throws NoSuchAlgorithmException
+   *    When no nonce gives a valid hash.
+   */
+  public long mine(int num, Transaction transaction, Hash prevHash, int difficulty,
+      long timestamp, HashValidator check) throws NoSuchAlgorithmException {
+    return this.mine(
+        (hasher) -> hasher.reset(num, transaction, prevHash, difficulty, timestamp), check);
+  } // mine(int, Transaction, Hash, int, long, HashValidator)
+
+  /**
+   * Find the lowest nonce that gives a block of several transactions a
+   * valid hash.
+   *
+   * @param num
+   *    The number of the block.
+   * @param root
+   *    The Merkle root of the transactions in the block.
+   * @param prevHash
+   *    The hash of the previous block.
+   * @param check
+   *    The validator used to check the block; it must be safe to call
+   *    from several threads at once.
+   * @return
+   *    The mined nonce value.
+   *
+   * @throws NoSuchAlgorithmException
+   *    When no nonce gives a valid hash.
+   */
+  public long mine(int num, Hash root, Hash prevHash, HashValidator check)
+      throws NoSuchAlgorithmException {
+    return this.mine(num, root, prevHash, 0, 0, check);
+  } // mine(int, Hash, Hash, HashValidator)
+
+  /**
+   * Find the lowest nonce that gives a block of several transactions that
+   * records a difficulty and a timestamp a valid hash.
+   *
+   * @param num
+   *    The number of the block.
+   * @param root
+   *    The Merkle root of the transactions in the block.
+   * @param prevHash
+   *    The hash of the previous block.
+   * @param difficulty
+   *    The difficulty the block records (or 0).
+   * @param timestamp
+   *    The time the block records (or 0).
+   * @param check
+   *    The validator used to check the block; it must be safe to call
+   *    from several threads at once.
+   * @return
+   *    The mined nonce value.
+   *
+   * @throws NoSuchAlgorithmException
+   *    When no nonce gives a valid hash.
+   */
+  public long mine(int num, Hash root, Hash prevHash, int difficulty, long timestamp,
+      HashValidator check) throws NoSuchAlgorithmException {
+    return this.mine((hasher) -> hasher.reset(num, root, prevHash, difficulty, timestamp),
+        check);
+  } // mine(int, Hash, Hash, int, long, HashValidator)
+
+  /**
+   * Stop the worker threads. The miner may not be used afterwards.
+   */
+  public void shutdown() {
+    if (this.pool != null) {
+      this.pool.shutdown();
+    } // if
+  } // shutdown()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Find the lowest nonce that gives a block a valid hash.
+   *
+   * @param reset
+   *    Prepares a hasher for the block.
+   * @param check
+   *    The validator used to check the block.
+   * @return
+   *    The mined nonce value.
+   *
+   * @throws NoSuchAlgorithmException
+   *    When no nonce gives a valid hash.
+   */
+  private long mine(Consumer<BlockHasher> reset, HashValidator check)
+      throws NoSuchAlgorithmException {
+    AtomicLong next = new AtomicLong(0);
+    AtomicLong best = new AtomicLong(Long.MAX_VALUE);
+    Callable<Void> worker = () -> {
+      search(reset, check, next, best);
+      return null;
+    };
+
+    if (this.pool == null) {
+      search(reset, check, next, best);
+    } else {
+      List<Callable<Void>> workers = new ArrayList<Callable<Void>>();
+      for (int i = 0; i < this.threads; i++) {
+        workers.add(worker);
+      } // for
+      try {
+        for (Future<Void> result : this.pool.invokeAll(workers)) {
+          result.get();
+        } // for
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("interrupted while mining", e);
+      } catch (ExecutionException e) {
+        throw new IllegalStateException("mining failed", e.getCause());
+      } // try/catch
+    } // if/else
+
+    if (best.get() == Long.MAX_VALUE) {
+      throw new NoSuchAlgorithmException();
+    } // if
+    return best.get();
+  } // mine(Consumer<BlockHasher>, HashValidator)
+
+  /**
+   * Claim chunks of nonces and search them until every nonce below the
+   * best one found so far has been claimed.
+   *
+   * @param reset
+   *    Prepares a hasher for the block.
+   * @param check
+   *    The validator used to check the block.
+   * @param next
+   *    The first nonce of the next unclaimed chunk.
+   * @param best
+   *    The lowest valid nonce found so far.
+   */
+  private static void search(Consumer<BlockHasher> reset, HashValidator check,
+      AtomicLong next, AtomicLong best) {
+    BlockHasher hasher = HASHERS.get();
+    reset.accept(hasher);
+    /* Difficulty checks can skip building the hash */
+    int bits = (check instanceof DifficultyValidator)
+        ? ((DifficultyValidator) check).getBits()
+        : -1;
+    while (true) {
+      long start = next.getAndAdd(CHUNK_SIZE);
+      if (start < 0 || start >= best.get()) {
+        return;
+      } // if
+      long end = (start > Long.MAX_VALUE - CHUNK_SIZE) ? Long.MAX_VALUE : start + CHUNK_SIZE;
+      for (long nonce = start; nonce < end; nonce++) {
+        if ((bits >= 0)
+            ? hasher.leadingZeroBits(nonce) >= bits
+            : hasher.isValid(nonce, check)) {
+          best.accumulateAndGet(nonce, Math::min);
+          return;
+        } // if
+      } // for(nonce)
+    } // while
+  } // search(Consumer<BlockHasher>, HashValidator, AtomicLong, AtomicLong)
+} // class Miner
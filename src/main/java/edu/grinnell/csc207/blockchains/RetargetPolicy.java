@@ -0,0 +1,181 @@
+package edu.grinnell.csc207.blockchains;
+
+/**
+ * A policy for adjusting a chain's difficulty (the number of leading zero
+ * bits each block's hash needs) as mining gets faster or slower. Every
+ * interval blocks, the chain compares how long those blocks took with how
+ * long they should have taken. Since each bit doubles the expected work,
+ * the difficulty moves by about the base-2 logarithm of the ratio, limited
+ * to MAX_STEP bits at a time and kept between a minimum and a maximum.
+ * Every block's difficulty is checked against the policy, so the step is
+ * worked out with integer arithmetic alone, which gives the same answer
+ * on every platform.
+ *
+ * @author Sara Jaljaa
+ * @author Jenifer Silva
+ */
+public class RetargetPolicy {
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The most bits the difficulty may move in one adjustment.
+   */
+  public static final int MAX_STEP = 2;
+
+  /**
+   * Times are scaled below this limit before they are compared, so that
+   * 4 * time and (3 * time) << MAX_STEP both fit in a long.
+   */
+  private static final long LIMIT = 1L << 58;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The number of blocks between adjustments.
+   */
+  private final int interval;
+
+  /**
+   * The desired time (in nanoseconds) per interval.
+   */
+  private final long intervalNanos;
+
+  /**
+   * The difficulty of a new chain.
+   */
+  private final int initialBits;
+
+  /**
+   * The lowest difficulty.
+   */
+  private final int minBits;
+
+  /**
+   * The highest difficulty.
+   */
+  private final int maxBits;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new policy.
+   *
+   * @param interval
+   *    The number of blocks between adjustments.
+   * @param targetMillis
+   *    The desired time (in milliseconds) per block.
+   * @param initialBits
+   *    The difficulty of a new chain.
+   * @param minBits
+   *    The lowest difficulty.
+   * @param maxBits
+   *    The highest difficulty.
+   *
+   * @throws IllegalArgumentException
+   *    If the interval or target is not positive, an interval at the target
+   *    rate lasts too long to count in nanoseconds, or the difficulties are
+   *    out of order or out of range.
+   */
+  public RetargetPolicy(int interval, long targetMillis, int initialBits, int minBits,
+      int maxBits) {
+    if (interval < 1 || targetMillis < 1) {
+      throw new IllegalArgumentException("interval and target must be positive");
+    } else if (targetMillis > Long.MAX_VALUE / 1_000_000L / interval) {
+      throw new IllegalArgumentException("interval and target are too long");
+    } else if (minBits < 0 || minBits > initialBits || initialBits > maxBits
+        || maxBits > 8 * Hash.MAX_BYTES) {
+      throw new IllegalArgumentException("difficulties must satisfy 0 <= min <= initial <= max <= "
+          + (8 * Hash.MAX_BYTES));
+    } // if
+    this.interval = interval;
+    this.intervalNanos = targetMillis * 1_000_000L * interval;
+    this.initialBits = initialBits;
+    this.minBits = minBits;
+    this.maxBits = maxBits;
+  } // RetargetPolicy(int, long, int, int, int)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Get the number of blocks between adjustments.
+   *
+   * @return the interval.
+   */
+  public int getInterval() {
+    return this.interval;
+  } // getInterval()
+
+  /**
+   * Get the difficulty of a new chain.
+   *
+   * @return the number of bits.
+   */
+  public int getInitialBits() {
+    return this.initialBits;
+  } // getInitialBits()
+
+  /**
+   * Get the lowest difficulty.
+   *
+   * @return the number of bits.
+   */
+  public int getMinBits() {
+    return this.minBits;
+  } // getMinBits()
+
+  /**
+   * Determine whether the difficulty is adjusted after a block.
+   *
+   * @param number
+   *    The number of the block.
+   *
+   * @return true if an adjustment interval ends with that block.
+   */
+  public boolean adjustsAfter(int number) {
+    return number > 0 && number % this.interval == 0;
+  } // adjustsAfter(int)
+
+  /**
+   * Compute the difficulty for the next interval. The difficulty rises by
+   * k bits when the interval took at most 1/(1.5 * 2^(k-1)) of the target
+   * time (so 2/3 for one bit, 1/3 for two), and falls by k bits when it
+   * took at least 1.5 * 2^(k-1) times the target time. These thresholds
+   * fall between the powers of two, close to where rounding the logarithm
+   * would put them (1.41 * 2^(k-1)), but need only integer arithmetic.
+   *
+   * @param bits
+   *    The difficulty of the interval that just ended.
+   * @param elapsedNanos
+   *    How long the interval took, in nanoseconds.
+   *
+   * @return the new difficulty.
+   */
+  public int retarget(int bits, long elapsedNanos) {
+    long target = this.intervalNanos;
+    long elapsed = Math.max(1, elapsedNanos);
+    /* Drop low bits so that the comparisons below cannot overflow */
+    while (target >= LIMIT || elapsed >= LIMIT) {
+      target >>>= 1;
+      elapsed >>>= 1;
+    } // while
+    elapsed = Math.max(1, elapsed);
+    int step = 0;
+    for (int k = MAX_STEP; k > 0 && step == 0; k--) {
+      if (4 * target >= (3 * elapsed) << k) {
+        step = k;
+      } else if (4 * elapsed >= (3 * target) << k) {
+        step = -k;
+      } // if/else
+    } // for
+    return Math.max(this.minBits, Math.min(this.maxBits, bits + step));
+  } // retarget(int, long)
+} // class RetargetPolicy
@@ -1,7 +1,13 @@
 package edu.grinnell.csc207.blockchains;
 
+import edu.grinnell.csc207.util.UserDictionary;
+
 /**
- * A simple transaction.
+ * A simple transaction. The source and target are stored as ids from the
+ * shared UserDictionary, so a chain holds one copy of each name no matter
+ * how many transactions mention it. The shared dictionary keeps every name
+ * for the life of the process, so each new name costs memory even after
+ * its transactions are gone.
  *
  * @author
  *   Samuel A. Rebelsky
@@ -12,14 +18,14 @@ public class Transaction {
   // +--------+
 
   /**
-   * The source of a transfer.
+   * The id of the source of a transfer.
    */
-  private String source;
+  private int source;
 
   /**
-   * The target of a transfer.
+   * The id of the target of a transfer.
    */
-  private String target;
+  private int target;
 
   /**
    * The amount transferred.
@@ -40,10 +46,16 @@ public class Transaction {
    *   The person receiving the transaction.
    * @param amt
    *   The funds transfered.
+   *
+   * @throws NullPointerException
+   *   If the source or target is null.
+   * @throws IllegalStateException
+   *   If the source or target is a new name and the shared dictionary is
+   *   full.
    */
   public Transaction(String src, String tgt, int amt) {
-    this.source = src;
-    this.target = tgt;
+    this.source = UserDictionary.global().intern(src);
+    this.target = UserDictionary.global().intern(tgt);
     this.amount = amt;
   } // Transaction(src)
 
@@ -57,7 +69,7 @@ public class Transaction {
    * @return The source (or the empty string, if it'sa deposit).
    */
   public String getSource() {
-    return this.source;
+    return UserDictionary.global().name(this.source);
   } // getSource()
 
   /**
@@ -66,9 +78,62 @@ public class Transaction {
    * @return The target.
    */
   public String getTarget() {
-    return this.target;
+    return UserDictionary.global().name(this.target);
   } // getTarget()
 
+  /**
+   * Get the id of the source of the transaction.
+   *
+   * @return The source's id (UserDictionary.DEPOSIT, if it's a deposit).
+   */
+  public int getSourceId() {
+    return this.source;
+  } // getSourceId()
+
+  /**
+   * Get the id of the target of the transaction.
+   *
+   * @return The target's id.
+   */
+  public int getTargetId() {
+    return this.target;
+  } // getTargetId()
+
+  /**
+   * Determine how many bytes the UTF-8 encodings of the source and target
+   * take together.
+   *
+   * @return The number of bytes.
+   */
+  int encodedLength() {
+    UserDictionary dict = UserDictionary.global();
+    return dict.encodedLength(this.source) + dict.encodedLength(this.target);
+  } // encodedLength()
+
+  /**
+   * Copy the UTF-8 encodings of the source and then the target into an
+   * array. The encodings are cached by the dictionary, so this neither
+   * encodes nor allocates.
+   *
+   * @param dest Where to copy the encodings.
+   * @param pos The index in dest of the first byte.
+   *
+   * @return The index in dest just after the target.
+   */
+  int encodeUsers(byte[] dest, int pos) {
+    UserDictionary dict = UserDictionary.global();
+    return dict.copyEncoded(this.target, dest, dict.copyEncoded(this.source, dest, pos));
+  } // encodeUsers(byte[], int)
+
+  /**
+   * Determine if the transaction is a deposit.
+   *
+   * @return true if the transaction has no source and false otherwise.
+   */
+  public boolean isDeposit() {
+    return this.source == UserDictionary.DEPOSIT;
+  } // isDeposit()
+
   /**
    * Get the amount of the transaction.
    *
@@ -87,8 +152,8 @@ public class Transaction {
    */
   public String toString() {
     return String.format("[%s, Target: %s, Amount: %s]",
-        ("".equals(this.source)) ? "Deposit" : "Source: " + this.source,
-        this.target,
+        this.isDeposit() ? "Deposit" : "Source: " + this.getSource(),
+        this.getTarget(),
         this.amount);
   } // toString()
 
@@ -98,7 +163,7 @@ public class Transaction {
    * @return the hash code.
    */
   public int hashCode() {
-    return this.toString().hashCode();
+    return (this.source * 31 + this.target) * 31 + this.amount;
   } // hashCode()
 
   /**
@@ -125,8 +190,8 @@ public class Transaction {
    *   and value.
    */
   public boolean equals(Transaction other) {
-    return other.source.equals(this.source)
-        && other.target.equals(this.target)
+    return other.source == this.source
+        && other.target == this.target
         && other.amount == this.amount;
   } // equals(Transaction)
 } // class Transaction
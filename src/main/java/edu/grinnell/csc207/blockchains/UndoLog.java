@@ -0,0 +1,111 @@
+package edu.grinnell.csc207.blockchains;
+
+import edu.grinnell.csc207.util.IntList;
+import edu.grinnell.csc207.util.Ledger;
+import java.util.Arrays;
+
+/**
+ * The balance changes made by each verified block, kept so that removing
+ * a block can restore the checkpoint ledger exactly as it was. Each
+ * block's record is a run of (user, delta, created) entries stored in
+ * parallel arrays.
+ *
+ * @author Sara Jaljaa
+ * @author Jenifer Silva
+ */
+final class UndoLog {
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The id of the user changed by each entry.
+   */
+  private int[] users = new int[16];
+
+  /**
+   * The amount added to the user's balance by each entry.
+   */
+  private long[] deltas = new long[16];
+
+  /**
+   * Whether each entry added its user to the ledger.
+   */
+  private boolean[] created = new boolean[16];
+
+  /**
+   * The number of entries.
+   */
+  private int count = 0;
+
+  /**
+   * The index of the first entry of each block's record.
+   */
+  private final IntList starts = new IntList();
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Start the record for a newly appended block.
+   */
+  void begin() {
+    this.starts.add(this.count);
+  } // begin()
+
+  /**
+   * Change a balance and record how to undo the change in the current
+   * block's record.
+   *
+   * @param ledger
+   *    The ledger to change.
+   * @param user
+   *    The id of the user whose balance changes.
+   * @param delta
+   *    The amount to add to the balance.
+   */
+  void apply(Ledger ledger, int user, long delta) {
+    boolean isNew = !ledger.hasKey(user);
+    ledger.add(user, delta);
+    if (this.count == this.users.length) {
+      int capacity = 2 * this.count;
+      this.users = Arrays.copyOf(this.users, capacity);
+      this.deltas = Arrays.copyOf(this.deltas, capacity);
+      this.created = Arrays.copyOf(this.created, capacity);
+    } // if
+    this.users[this.count] = user;
+    this.deltas[this.count] = delta;
+    this.created[this.count] = isNew;
+    this.count++;
+  } // apply(Ledger, int, long)
+
+  /**
+   * Undo the changes made by the most recent block, removing its record.
+   *
+   * @param ledger
+   *    The ledger to restore.
+   */
+  void undo(Ledger ledger) {
+    int start = this.starts.removeLast();
+    while (this.count > start) {
+      this.count--;
+      int user = this.users[this.count];
+      if (this.created[this.count]) {
+        ledger.remove(user);
+      } else {
+        ledger.add(user, -this.deltas[this.count]);
+      } // if/else
+    } // while
+  } // undo(Ledger)
+
+  /**
+   * Determine how many blocks have records.
+   *
+   * @return the number of records.
+   */
+  int size() {
+    return this.starts.size();
+  } // size()
+} // class UndoLog
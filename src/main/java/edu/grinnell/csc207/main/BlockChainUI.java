@@ -2,13 +2,21 @@ package edu.grinnell.csc207.main;
 
 import edu.grinnell.csc207.blockchains.Block;
 import edu.grinnell.csc207.blockchains.BlockChain;
+import edu.grinnell.csc207.blockchains.ChainView;
+import edu.grinnell.csc207.blockchains.DifficultyValidator;
 import edu.grinnell.csc207.blockchains.HashValidator;
 import edu.grinnell.csc207.blockchains.Transaction;
 import edu.grinnell.csc207.util.IOUtils;
+import edu.grinnell.csc207.util.Ledger;
 
 import java.io.PrintWriter;
 import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Iterator;
 
 /**
  * A simple UI for our BlockChain class.
@@ -28,6 +36,16 @@ public class BlockChainUI {
    */
   static final int VALIDATOR_BYTES = 0;
 
+  /**
+   * The number of lines printed between flushes when listing blocks, transactions, or users.
+   */
+  static final int FLUSH_LINES = 256;
+
+  /**
+   * How often (in nanoseconds) load reports its progress.
+   */
+  static final long REPORT_NANOS = 1_000_000_000L;
+
   // +---------+-----------------------------------------------------
   // | Helpers |
   // +---------+
@@ -44,14 +62,142 @@ public class BlockChainUI {
           append: appends a new block onto the end of the chain
           remove: removes the last block from the end of the chain
           check: checks that the block chain is valid
-          users: prints a list of users
+          users [limit]: prints a list of users
           balance: finds a user's balance
-          transactions: prints out the chain of transactions
-          blocks: prints out the chain of blocks (for debugging only)
+          load <file>: mines and appends the transactions in a CSV file of source,target,amount
+          transactions [from [to [limit]]]: prints the transactions in blocks from..to-1
+          blocks [from [to [limit]]]: prints blocks from..to-1 (for debugging only)
           help: prints this list of commands
           quit: quits the program""");
   } // instructions(PrintWriter)
 
+  /**
+   * Print items one per line as they are produced, flushing every FLUSH_LINES lines, so that
+   * long listings need no more memory than one item and show up as they go.
+   *
+   * @param pen The pen used for printing.
+   * @param items The items to print.
+   * @param limit The most items to print.
+   * @return The number of items printed.
+   */
+  static long printAll(PrintWriter pen, Iterator<?> items, long limit) {
+    long count = 0;
+    while (count < limit && items.hasNext()) {
+      pen.println(items.next());
+      if (++count % FLUSH_LINES == 0) {
+        pen.flush();
+      } // if
+    } // while
+    pen.flush();
+    return count;
+  } // printAll(PrintWriter, Iterator<?>, long)
+
+  /**
+   * Load transactions from CSV text, one source,target,amount line per transaction (with an
+   * empty source for a deposit), mining them into blocks of up to the chain's block size and
+   * appending each block as soon as it is mined. Blank lines and lines that start with # are
+   * skipped. Transactions are applied in file order, so the work per line stays constant and
+   * nothing waits. Progress is reported every REPORT_NANOS. Loading stops at the first malformed
+   * line, the first transaction whose source cannot afford it after the lines before it, or the
+   * first new user name once the shared user dictionary is full; that line is reported, and the
+   * lines before it stay in the chain.
+   *
+   * @param pen The pen used for reporting progress.
+   * @param chain The chain to load into.
+   * @param lines The CSV text.
+   * @return The number of transactions appended.
+   *
+   * @throws IOException If the text cannot be read.
+   */
+  static long load(PrintWriter pen, BlockChain chain, BufferedReader lines) throws IOException {
+    long start = System.nanoTime();
+    long nextReport = start + REPORT_NANOS;
+    long loaded = 0;
+    int blocks = 0;
+    Transaction[] batch = new Transaction[chain.getBlockSize()];
+    int added = 0;
+    /* How the transactions in the batch change the balances after the last block */
+    Ledger changes = new Ledger();
+    int lineNumber = 0;
+    String line;
+    while ((line = lines.readLine()) != null) {
+      lineNumber++;
+      if (line.isBlank() || line.startsWith("#")) {
+        continue;
+      } // if
+      String[] fields = line.split(",", -1);
+      Transaction t;
+      try {
+        if (fields.length != 3) {
+          throw new IllegalArgumentException("expected source,target,amount");
+        } // if
+        t = new Transaction(fields[0].trim(), fields[1].trim(),
+            Integer.parseInt(fields[2].trim()));
+        if (t.getAmount() < 0) {
+          throw new IllegalArgumentException("transactions may not have negative amounts");
+        } else if (!t.isDeposit()
+            && chain.balance(t.getSource()) + changes.get(t.getSourceId()) < t.getAmount()) {
+          throw new IllegalArgumentException(t.getSource() + " cannot afford " + t.getAmount());
+        } // if
+      } catch (IllegalArgumentException | IllegalStateException e) {
+        pen.printf("line %d: %s (%s)\n", lineNumber, e.getMessage(), line);
+        break;
+      } // try/catch
+      if (!t.isDeposit()) {
+        changes.add(t.getSourceId(), -t.getAmount());
+      } // if
+      changes.add(t.getTargetId(), t.getAmount());
+      batch[added++] = t;
+      if (added == batch.length) {
+        chain.append(chain.mine(batch));
+        loaded += added;
+        blocks++;
+        added = 0;
+        changes = new Ledger();
+      } // if
+      if (System.nanoTime() >= nextReport) {
+        report(pen, loaded, blocks, System.nanoTime() - start);
+        nextReport += REPORT_NANOS;
+      } // if
+    } // while
+    if (added > 0) {
+      chain.append(chain.mine(Arrays.copyOf(batch, added)));
+      loaded += added;
+      blocks++;
+    } // if
+    chain.sync();
+    report(pen, loaded, blocks, System.nanoTime() - start);
+    return loaded;
+  } // load(PrintWriter, BlockChain, BufferedReader)
+
+  /**
+   * Report how far a load has got.
+   *
+   * @param pen The pen used for reporting.
+   * @param loaded The number of transactions appended so far.
+   * @param blocks The number of blocks appended so far.
+   * @param elapsed The time taken so far, in nanoseconds.
+   */
+  static void report(PrintWriter pen, long loaded, int blocks, long elapsed) {
+    pen.printf("loaded %d transactions in %d blocks (%.0f transactions/s)\n", loaded, blocks,
+        loaded / Math.max(elapsed / 1e9, 1e-9));
+    pen.flush();
+  } // report(PrintWriter, long, int, long)
+
+  /**
+   * Get one of a command's optional numeric arguments.
+   *
+   * @param words The words of the command, starting with the command itself.
+   * @param i The index of the argument among the words.
+   * @param otherwise The value to use if the argument is missing.
+   * @return The argument.
+   *
+   * @throws NumberFormatException If the argument is not a number.
+   */
+  static int argument(String[] words, int i, int otherwise) {
+    return (i < words.length) ? Integer.parseInt(words[i]) : otherwise;
+  } // argument(String[], int, int)
+
   // +------+--------------------------------------------------------
   // | Main |
   // +------+
@@ -59,25 +205,17 @@ public class BlockChainUI {
   /**
    * Run the UI.
    *
-   * @param args Command-line arguments (currently ignored).
+   * @param args Command-line arguments: optionally, the file that holds the chain.
    */
   public static void main(String[] args) throws Exception {
-    PrintWriter pen = new PrintWriter(System.out, true);
+    PrintWriter pen = new PrintWriter(System.out);
     BufferedReader eyes = new BufferedReader(new InputStreamReader(System.in));
 
     // Set up our blockchain.
-    HashValidator validator = (h) -> {
-      if (h.length() < VALIDATOR_BYTES) {
-        return false;
-      } // if
-      for (int v = 0; v < VALIDATOR_BYTES; v++) {
-        if (h.get(v) != 0) {
-          return false;
-        } // if
-      } // for
-      return true;
-    };
-    BlockChain chain = new BlockChain(validator);
+    HashValidator validator = new DifficultyValidator(8 * VALIDATOR_BYTES);
+    BlockChain chain = (args.length > 0)
+        ? new BlockChain(validator, Paths.get(args[0]))
+        : new BlockChain(validator);
 
     instructions(pen);
 
@@ -95,7 +233,10 @@ public class BlockChainUI {
         command = "quit";
       } // if
 
-      switch (command.toLowerCase()) {
+      String[] words = command.trim().split("\\s+");
+      ChainView view;
+
+      switch (words[0].toLowerCase()) {
         case "append":
           pen.print("\n Source(return for deposit): ");
           pen.flush();
@@ -120,7 +261,16 @@ public class BlockChainUI {
           break;
 
         case "blocks":
-          pen.printf(chain.format(chain.blocks()));
+          view = chain.snapshot();
+          try {
+            int from = argument(words, 1, 0);
+            int to = argument(words, 2, view.getSize());
+            printAll(pen, view.blockStream(from, to).iterator(),
+                argument(words, 3, Integer.MAX_VALUE));
+          } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            pen.printf("usage: blocks [from [to [limit]]], with 0 <= from <= to <= %d\n",
+                view.getSize());
+          } // try/catch
           break;
 
         case "check":
@@ -135,6 +285,18 @@ public class BlockChainUI {
           instructions(pen);
           break;
 
+        case "load":
+          if (words.length != 2) {
+            pen.printf("usage: load <file>\n");
+            break;
+          } // if
+          try (BufferedReader lines = Files.newBufferedReader(Paths.get(words[1]))) {
+            load(pen, chain, lines);
+          } catch (IOException e) {
+            pen.printf("could not load %s: %s\n", words[1], e.getMessage());
+          } // try/catch
+          break;
+
         case "mine":
           source = IOUtils.readLine(pen, eyes, "Source (return for deposit): ");
           target = IOUtils.readLine(pen, eyes, "Target: ");
@@ -155,11 +317,24 @@ public class BlockChainUI {
           break;
 
         case "transactions":
-          pen.printf(chain.format(chain.iterator()));
+          view = chain.snapshot();
+          try {
+            int from = argument(words, 1, 0);
+            int to = argument(words, 2, view.getSize());
+            printAll(pen, view.transactions(from, to).iterator(),
+                argument(words, 3, Integer.MAX_VALUE));
+          } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            pen.printf("usage: transactions [from [to [limit]]], with 0 <= from <= to <= %d\n",
+                view.getSize());
+          } // try/catch
           break;
 
         case "users":
-          pen.printf(chain.format(chain.users()));
+          try {
+            printAll(pen, chain.users(), argument(words, 1, Integer.MAX_VALUE));
+          } catch (NumberFormatException e) {
+            pen.printf("usage: users [limit]\n");
+          } // try/catch
           break;
 
         default:
@@ -169,6 +344,7 @@ public class BlockChainUI {
     } // while
 
     pen.printf("\nGoodbye\n");
+    chain.close();
     eyes.close();
     pen.close();
   } // main(String[])
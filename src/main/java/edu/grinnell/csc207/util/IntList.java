@@ -0,0 +1,120 @@
+package edu.grinnell.csc207.util;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of primitive ints.
+ *
+ * @author Sara Jaljaa
+ * @author Jenifer Silva
+ */
+public class IntList {
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The default capacity of the initial array.
+   */
+  static final int DEFAULT_CAPACITY = 8;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The values.
+   */
+  int[] values;
+
+  /**
+   * The number of values in the list.
+   */
+  int size;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new, empty list.
+   */
+  public IntList() {
+    this.values = new int[DEFAULT_CAPACITY];
+    this.size = 0;
+  } // IntList()
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Add a value to the end of the list.
+   *
+   * @param val
+   *    The value to add.
+   */
+  public void add(int val) {
+    if (this.size == this.values.length) {
+      this.values = Arrays.copyOf(this.values, 2 * this.values.length);
+    } // if
+    this.values[this.size++] = val;
+  } // add(int)
+
+  /**
+   * Get a value.
+   *
+   * @param i
+   *    The index of the value, between 0 (inclusive) and size() (exclusive).
+   * @return
+   *    The value.
+   *
+   * @throws IndexOutOfBoundsException
+   *    If i is not a valid index.
+   */
+  public int get(int i) {
+    if (i < 0 || i >= this.size) {
+      throw new IndexOutOfBoundsException(i);
+    } // if
+    return this.values[i];
+  } // get(int)
+
+  /**
+   * Get the last value.
+   *
+   * @return
+   *    The last value.
+   *
+   * @throws IndexOutOfBoundsException
+   *    If the list is empty.
+   */
+  public int getLast() {
+    return this.get(this.size - 1);
+  } // getLast()
+
+  /**
+   * Remove the last value.
+   *
+   * @return
+   *    The value removed.
+   *
+   * @throws IndexOutOfBoundsException
+   *    If the list is empty.
+   */
+  public int removeLast() {
+    int last = this.getLast();
+    this.size--;
+    return last;
+  } // removeLast()
+
+  /**
+   * Determine how many values are in the list.
+   *
+   * @return
+   *    The number of values.
+   */
+  public int size() {
+    return this.size;
+  } // size()
+} // class IntList
@@ -0,0 +1,350 @@
+package edu.grinnell.csc207.util;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * A table of balances keyed by user id (see UserDictionary). Ids and
+ * balances live in parallel arrays indexed by open addressing (linear
+ * probing), so lookups and updates take expected constant time, compare
+ * users with a single int comparison, and store balances as primitive
+ * longs rather than boxed values in key/value pairs.
+ *
+ * @author Sara Jaljaa
+ * @author Jenifer Silva
+ */
+public class Ledger {
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The default capacity of the table (a power of two).
+   */
+  static final int DEFAULT_CAPACITY = 16;
+
+  /**
+   * The id stored in an empty slot.
+   */
+  static final int EMPTY = -1;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The number of users in the ledger.
+   */
+  int size;
+
+  /**
+   * The user ids, indexed by slot (EMPTY for an empty slot).
+   */
+  int[] users;
+
+  /**
+   * The balances, indexed by slot.
+   */
+  long[] balances;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new, empty ledger.
+   */
+  public Ledger() {
+    this.users = emptySlots(DEFAULT_CAPACITY);
+    this.balances = new long[DEFAULT_CAPACITY];
+    this.size = 0;
+  } // Ledger()
+
+  // +------------------+--------------------------------------------
+  // | Standard Methods |
+  // +------------------+
+
+  /**
+   * Create a copy of this ledger.
+   *
+   * @return
+   *    A new copy of the ledger.
+   */
+  public Ledger clone() {
+    Ledger cloned = new Ledger();
+    cloned.users = Arrays.copyOf(this.users, this.users.length);
+    cloned.balances = Arrays.copyOf(this.balances, this.balances.length);
+    cloned.size = this.size;
+    return cloned;
+  } // clone()
+
+  /**
+   * Convert the ledger to a string.
+   *
+   * @return
+   *    A string of the form "{Id0:Balance0, ... IdN:BalanceN}"
+   */
+  public String toString() {
+    StringBuilder concat = new StringBuilder("{");
+    for (int i = 0; i < this.users.length; i++) {
+      if (this.users[i] != EMPTY) {
+        if (concat.length() > 1) {
+          concat.append(", ");
+        } // if
+        concat.append(this.users[i]).append(":").append(this.balances[i]);
+      } // if
+    } // for
+    return new String(concat.append("}"));
+  } // toString()
+
+  // +----------------+----------------------------------------------
+  // | Public Methods |
+  // +----------------+
+
+  /**
+   * Get a user's balance.
+   *
+   * @param user
+   *   The user's id.
+   *
+   * @return
+   *   The user's balance, or 0 if the user is not in the ledger.
+   */
+  public long get(int user) {
+    int slot = this.find(user);
+    return (this.users[slot] == EMPTY) ? 0 : this.balances[slot];
+  } // get(int)
+
+  /**
+   * Determine if a user appears in the ledger.
+   *
+   * @param user
+   *   The id of the user we're looking for.
+   *
+   * @return
+   *   True if the user appears and false otherwise.
+   */
+  public boolean hasKey(int user) {
+    return (user >= 0) && (this.users[this.find(user)] != EMPTY);
+  } // hasKey(int)
+
+  /**
+   * Set a user's balance, adding the user if necessary.
+   *
+   * @param user
+   *   The id of the user whose balance we are setting.
+   * @param balance
+   *   The new balance.
+   *
+   * @throws IllegalArgumentException
+   *   If the id is negative.
+   */
+  public void set(int user, long balance) {
+    this.balances[this.slotFor(user)] = balance;
+  } // set(int, long)
+
+  /**
+   * Add to a user's balance, adding the user if necessary.
+   *
+   * @param user
+   *   The id of the user whose balance changes.
+   * @param delta
+   *   The amount to add (negative to subtract).
+   *
+   * @return
+   *   The new balance.
+   *
+   * @throws IllegalArgumentException
+   *   If the id is negative.
+   */
+  public long add(int user, long delta) {
+    int slot = this.slotFor(user);
+    this.balances[slot] += delta;
+    return this.balances[slot];
+  } // add(int, long)
+
+  /**
+   * Remove a user from the ledger. If the user does not appear in the
+   * ledger, does nothing.
+   *
+   * @param user
+   *   The id of the user to remove.
+   */
+  public void remove(int user) {
+    if (user < 0) {
+      return;
+    } // if
+    int mask = this.users.length - 1;
+    int hole = this.find(user);
+    if (this.users[hole] == EMPTY) {
+      return;
+    } // if
+
+    /* Shift later members of the probe sequence back into the hole */
+    int slot = hole;
+    while (true) {
+      slot = (slot + 1) & mask;
+      if (this.users[slot] == EMPTY) {
+        break;
+      } // if
+      int home = hash(this.users[slot]) & mask;
+      if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+        this.users[hole] = this.users[slot];
+        this.balances[hole] = this.balances[slot];
+        hole = slot;
+      } // if
+    } // while
+    this.users[hole] = EMPTY;
+    this.balances[hole] = 0;
+    this.size--;
+  } // remove(int)
+
+  /**
+   * Determine how many users are in the ledger.
+   *
+   * @return
+   *    The number of users.
+   */
+  public int size() {
+    return this.size;
+  } // size()
+
+  /**
+   * Get an iterator for the ids of the users in the ledger, in no
+   * particular order.
+   *
+   * @return
+   *    An iterator for the ids.
+   */
+  public PrimitiveIterator.OfInt users() {
+    return new PrimitiveIterator.OfInt() {
+      private final int[] slots = Ledger.this.users;
+      private int slot = advance(0);
+
+      /* Skip empty slots */
+      private int advance(int from) {
+        while (from < this.slots.length && this.slots[from] == EMPTY) {
+          from++;
+        } // while
+        return from;
+      } // advance(int)
+
+      @Override
+      public boolean hasNext() {
+        return this.slot < this.slots.length;
+      } // hasNext()
+
+      @Override
+      public int nextInt() {
+        if (!this.hasNext()) {
+          throw new NoSuchElementException();
+        } // if
+        int user = this.slots[this.slot];
+        this.slot = advance(this.slot + 1);
+        return user;
+      } // nextInt()
+    };
+  } // users()
+
+  // +-----------------+---------------------------------------------
+  // | Private Methods |
+  // +-----------------+
+
+  /**
+   * Make an array of empty slots.
+   *
+   * @param capacity
+   *   The number of slots.
+   *
+   * @return
+   *   The slots.
+   */
+  private static int[] emptySlots(int capacity) {
+    int[] slots = new int[capacity];
+    Arrays.fill(slots, EMPTY);
+    return slots;
+  } // emptySlots(int)
+
+  /**
+   * Spread the bits of a user id (ids are dense, so neighbours would
+   * otherwise cluster).
+   *
+   * @param user
+   *   The user's id.
+   *
+   * @return
+   *   The spread id.
+   */
+  static int hash(int user) {
+    int h = user * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  } // hash(int)
+
+  /**
+   * Find the slot that holds a user or, if the user is not in the ledger,
+   * the empty slot where it would go.
+   *
+   * @param user
+   *   The user's id.
+   *
+   * @return
+   *   The slot.
+   */
+  private int find(int user) {
+    int mask = this.users.length - 1;
+    int slot = hash(user) & mask;
+    while (this.users[slot] != EMPTY && this.users[slot] != user) {
+      slot = (slot + 1) & mask;
+    } // while
+    return slot;
+  } // find(int)
+
+  /**
+   * Find the slot that holds a user, adding the user (with a balance of
+   * 0) if necessary.
+   *
+   * @param user
+   *   The user's id.
+   *
+   * @return
+   *   The slot.
+   *
+   * @throws IllegalArgumentException
+   *   If the id is negative.
+   */
+  private int slotFor(int user) {
+    if (user < 0) {
+      throw new IllegalArgumentException("user ids are not negative");
+    } // if
+    int slot = this.find(user);
+    if (this.users[slot] == EMPTY) {
+      if (3 * (this.size + 1) > 2 * this.users.length) {
+        this.expand();
+        slot = this.find(user);
+      } // if
+      this.users[slot] = user;
+      this.balances[slot] = 0;
+      this.size++;
+    } // if
+    return slot;
+  } // slotFor(int)
+
+  /**
+   * Double the capacity of the table, rehashing every user.
+   */
+  private void expand() {
+    int[] oldUsers = this.users;
+    long[] oldBalances = this.balances;
+    this.users = emptySlots(oldUsers.length * 2);
+    this.balances = new long[oldUsers.length * 2];
+    for (int i = 0; i < oldUsers.length; i++) {
+      if (oldUsers[i] != EMPTY) {
+        int slot = this.find(oldUsers[i]);
+        this.users[slot] = oldUsers[i];
+        this.balances[slot] = oldBalances[i];
+      } // if
+    } // for
+  } // expand()
+} // class Ledger
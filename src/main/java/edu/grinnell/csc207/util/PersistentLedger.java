@@ -0,0 +1,591 @@
+package edu.grinnell.csc207.util;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * An immutable table of balances keyed by user id (see UserDictionary),
+ * stored as a hash array mapped trie. Each node covers five bits of a
+ * user's (spread) id and holds, in two compact arrays, the users that end
+ * there and the child nodes below it. Changing a balance copies only the
+ * path from the root to that user, O(log n) small nodes, and shares the
+ * rest of the trie with the ledger it came from, so old ledgers stay
+ * intact (and readable from any thread) at no extra cost.
+ *
+ * Use a Builder to make many changes at once: nodes the builder has
+ * already copied are changed in place, so a batch of changes copies each
+ * node at most once.
+ *
+ * Spread ids (see Ledger.hash) are distinct for distinct users, so two
+ * users never share a path all the way down and the trie needs no
+ * collision lists.
+ *
+ * @author Sara Jaljaa
+ * @author Jenifer Silva
+ */
+public final class PersistentLedger {
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The number of bits of a spread id that each level covers.
+   */
+  static final int BITS = 5;
+
+  /**
+   * The most levels a trie can have.
+   */
+  static final int MAX_DEPTH = (Integer.SIZE + BITS - 1) / BITS;
+
+  /**
+   * The trie with no users.
+   */
+  private static final Node EMPTY_NODE = new Node(null, 0, 0, new int[0], new long[0],
+      new Node[0]);
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The root of the trie.
+   */
+  private final Node root;
+
+  /**
+   * The number of users in the ledger.
+   */
+  private final int size;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new, empty ledger.
+   */
+  public PersistentLedger() {
+    this(EMPTY_NODE, 0);
+  } // PersistentLedger()
+
+  /**
+   * Create a ledger from a trie.
+   *
+   * @param root
+   *    The root of the trie.
+   * @param size
+   *    The number of users in the trie.
+   */
+  private PersistentLedger(Node root, int size) {
+    this.root = root;
+    this.size = size;
+  } // PersistentLedger(Node, int)
+
+  // +------------------+--------------------------------------------
+  // | Standard Methods |
+  // +------------------+
+
+  /**
+   * Convert the ledger to a string.
+   *
+   * @return
+   *    A string of the form "{Id0:Balance0, ... IdN:BalanceN}"
+   */
+  public String toString() {
+    StringBuilder concat = new StringBuilder("{");
+    PrimitiveIterator.OfInt it = this.users();
+    while (it.hasNext()) {
+      int user = it.nextInt();
+      if (concat.length() > 1) {
+        concat.append(", ");
+      } // if
+      concat.append(user).append(":").append(this.get(user));
+    } // while
+    return new String(concat.append("}"));
+  } // toString()
+
+  // +----------------+----------------------------------------------
+  // | Public Methods |
+  // +----------------+
+
+  /**
+   * Get a user's balance.
+   *
+   * @param user
+   *   The user's id.
+   *
+   * @return
+   *   The user's balance, or 0 if the user is not in the ledger.
+   */
+  public long get(int user) {
+    return get(this.root, user);
+  } // get(int)
+
+  /**
+   * Determine if a user appears in the ledger.
+   *
+   * @param user
+   *   The id of the user we're looking for.
+   *
+   * @return
+   *   True if the user appears and false otherwise.
+   */
+  public boolean hasKey(int user) {
+    if (user < 0) {
+      return false;
+    } // if
+    int hash = Ledger.hash(user);
+    Node node = this.root;
+    for (int shift = 0; ; shift += BITS) {
+      int bit = bit(hash, shift);
+      if ((node.dataMap & bit) != 0) {
+        return node.users[index(node.dataMap, bit)] == user;
+      } else if ((node.nodeMap & bit) != 0) {
+        node = node.children[index(node.nodeMap, bit)];
+      } else {
+        return false;
+      } // if/else
+    } // for
+  } // hasKey(int)
+
+  /**
+   * Make a ledger that differs from this one only in one user's balance,
+   * adding the user if necessary. This ledger does not change.
+   *
+   * @param user
+   *   The id of the user whose balance changes.
+   * @param delta
+   *   The amount to add (negative to subtract).
+   *
+   * @return
+   *   The new ledger.
+   *
+   * @throws IllegalArgumentException
+   *   If the id is negative.
+   */
+  public PersistentLedger add(int user, long delta) {
+    Builder builder = this.builder();
+    builder.add(user, delta);
+    return builder.build();
+  } // add(int, long)
+
+  /**
+   * Start a batch of changes to this ledger. This ledger does not change.
+   *
+   * @return
+   *    A builder whose balances start as this ledger's.
+   */
+  public Builder builder() {
+    return new Builder(this.root, this.size);
+  } // builder()
+
+  /**
+   * Determine how many users are in the ledger.
+   *
+   * @return
+   *    The number of users.
+   */
+  public int size() {
+    return this.size;
+  } // size()
+
+  /**
+   * Get an iterator for the ids of the users in the ledger, in no
+   * particular order.
+   *
+   * @return
+   *    An iterator for the ids.
+   */
+  public PrimitiveIterator.OfInt users() {
+    return new PrimitiveIterator.OfInt() {
+      /* The nodes on the path to the next user */
+      private final Node[] nodes = new Node[MAX_DEPTH + 1];
+
+      /* For each node on the path, the next user (or, past the users, child) to visit */
+      private final int[] next = new int[MAX_DEPTH + 1];
+
+      /* The depth of the current node (or -1, when done) */
+      private int depth = 0;
+
+      /* Start at the first user */
+      {
+        this.nodes[0] = PersistentLedger.this.root;
+        this.advance();
+      } // initializer
+
+      /* Move to the next node that still has users to visit */
+      private void advance() {
+        while (this.depth >= 0) {
+          Node node = this.nodes[this.depth];
+          int i = this.next[this.depth];
+          if (i < node.users.length) {
+            return;
+          } else if (i - node.users.length < node.children.length) {
+            this.next[this.depth]++;
+            this.depth++;
+            this.nodes[this.depth] = node.children[i - node.users.length];
+            this.next[this.depth] = 0;
+          } else {
+            this.depth--;
+          } // if/else
+        } // while
+      } // advance()
+
+      @Override
+      public boolean hasNext() {
+        return this.depth >= 0;
+      } // hasNext()
+
+      @Override
+      public int nextInt() {
+        if (!this.hasNext()) {
+          throw new NoSuchElementException();
+        } // if
+        int user = this.nodes[this.depth].users[this.next[this.depth]++];
+        this.advance();
+        return user;
+      } // nextInt()
+    };
+  } // users()
+
+  // +-----------------+---------------------------------------------
+  // | Private Methods |
+  // +-----------------+
+
+  /**
+   * Find the bit for the part of a spread id that one level covers.
+   *
+   * @param hash
+   *   The spread id.
+   * @param shift
+   *   The number of bits that the levels above cover.
+   *
+   * @return
+   *   A bitmap with just that bit set.
+   */
+  static int bit(int hash, int shift) {
+    return 1 << ((hash >>> shift) & ((1 << BITS) - 1));
+  } // bit(int, int)
+
+  /**
+   * Find where the entry for a bit goes in a node's compact array.
+   *
+   * @param map
+   *   The node's bitmap.
+   * @param bit
+   *   The bit.
+   *
+   * @return
+   *   The number of entries before it.
+   */
+  static int index(int map, int bit) {
+    return Integer.bitCount(map & (bit - 1));
+  } // index(int, int)
+
+  /**
+   * Get a user's balance in a trie.
+   *
+   * @param root
+   *   The root of the trie.
+   * @param user
+   *   The user's id.
+   *
+   * @return
+   *   The user's balance, or 0 if the user is not in the trie.
+   */
+  private static long get(Node root, int user) {
+    int hash = Ledger.hash(user);
+    Node node = root;
+    for (int shift = 0; ; shift += BITS) {
+      int bit = bit(hash, shift);
+      if ((node.dataMap & bit) != 0) {
+        int i = index(node.dataMap, bit);
+        return (node.users[i] == user) ? node.balances[i] : 0;
+      } else if ((node.nodeMap & bit) != 0) {
+        node = node.children[index(node.nodeMap, bit)];
+      } else {
+        return 0;
+      } // if/else
+    } // for
+  } // get(Node, int)
+
+  /**
+   * Copy an array with one more element.
+   *
+   * @param array The array.
+   * @param i Where the new element goes.
+   * @param val The new element.
+   * @return The copy.
+   */
+  private static int[] insert(int[] array, int i, int val) {
+    int[] result = Arrays.copyOf(array, array.length + 1);
+    System.arraycopy(array, i, result, i + 1, array.length - i);
+    result[i] = val;
+    return result;
+  } // insert(int[], int, int)
+
+  /**
+   * Copy an array with one more element.
+   *
+   * @param array The array.
+   * @param i Where the new element goes.
+   * @param val The new element.
+   * @return The copy.
+   */
+  private static long[] insert(long[] array, int i, long val) {
+    long[] result = Arrays.copyOf(array, array.length + 1);
+    System.arraycopy(array, i, result, i + 1, array.length - i);
+    result[i] = val;
+    return result;
+  } // insert(long[], int, long)
+
+  /**
+   * Copy an array with one more element.
+   *
+   * @param array The array.
+   * @param i Where the new element goes.
+   * @param val The new element.
+   * @return The copy.
+   */
+  private static Node[] insert(Node[] array, int i, Node val) {
+    Node[] result = Arrays.copyOf(array, array.length + 1);
+    System.arraycopy(array, i, result, i + 1, array.length - i);
+    result[i] = val;
+    return result;
+  } // insert(Node[], int, Node)
+
+  /**
+   * Copy an array without one element.
+   *
+   * @param array The array.
+   * @param i The element to leave out.
+   * @return The copy.
+   */
+  private static int[] remove(int[] array, int i) {
+    int[] result = Arrays.copyOf(array, array.length - 1);
+    System.arraycopy(array, i + 1, result, i, array.length - i - 1);
+    return result;
+  } // remove(int[], int)
+
+  /**
+   * Copy an array without one element.
+   *
+   * @param array The array.
+   * @param i The element to leave out.
+   * @return The copy.
+   */
+  private static long[] remove(long[] array, int i) {
+    long[] result = Arrays.copyOf(array, array.length - 1);
+    System.arraycopy(array, i + 1, result, i, array.length - i - 1);
+    return result;
+  } // remove(long[], int)
+
+  // +---------------+-----------------------------------------------
+  // | Inner Classes |
+  // +---------------+
+
+  /**
+   * A node of the trie. Nodes are never changed once a ledger can see
+   * them; only the builder that made a node (its owner) may change it,
+   * and only until the builder builds a ledger.
+   */
+  private static final class Node {
+    /**
+     * The builder that may change the node (or null, if none may).
+     */
+    Object owner;
+
+    /**
+     * The bits for the users that end in this node.
+     */
+    int dataMap;
+
+    /**
+     * The bits for the children of this node.
+     */
+    int nodeMap;
+
+    /**
+     * The users that end in this node, in bit order.
+     */
+    int[] users;
+
+    /**
+     * Their balances.
+     */
+    long[] balances;
+
+    /**
+     * The children, in bit order.
+     */
+    Node[] children;
+
+    /**
+     * Create a node.
+     *
+     * @param owner The builder that may change the node (or null).
+     * @param dataMap The bits for the users that end in this node.
+     * @param nodeMap The bits for the children.
+     * @param users The users, in bit order.
+     * @param balances Their balances.
+     * @param children The children, in bit order.
+     */
+    Node(Object owner, int dataMap, int nodeMap, int[] users, long[] balances,
+        Node[] children) {
+      this.owner = owner;
+      this.dataMap = dataMap;
+      this.nodeMap = nodeMap;
+      this.users = users;
+      this.balances = balances;
+      this.children = children;
+    } // Node(Object, int, int, int[], long[], Node[])
+
+    /**
+     * Get a copy of this node that an owner may change (this node itself,
+     * if the owner already owns it).
+     *
+     * @param owner The builder.
+     * @return The node.
+     */
+    Node ownedBy(Object owner) {
+      if (this.owner == owner) {
+        return this;
+      } // if
+      return new Node(owner, this.dataMap, this.nodeMap, this.users.clone(),
+          this.balances.clone(), this.children.clone());
+    } // ownedBy(Object)
+  } // class Node
+
+  /**
+   * A batch of changes to a ledger. A builder changes its own copies of
+   * the nodes it touches in place; build() hands those nodes over to an
+   * immutable ledger, after which the builder copies them again before
+   * making more changes. Builders are not safe to share between threads.
+   */
+  public static final class Builder {
+    /**
+     * The token that marks the nodes this builder may change.
+     */
+    private Object owner;
+
+    /**
+     * The root of the trie.
+     */
+    private Node root;
+
+    /**
+     * The number of users in the trie.
+     */
+    private int size;
+
+    /**
+     * Start a batch of changes.
+     *
+     * @param root The root of the trie to change.
+     * @param size The number of users in the trie.
+     */
+    Builder(Node root, int size) {
+      this.owner = new Object();
+      this.root = root;
+      this.size = size;
+    } // Builder(Node, int)
+
+    /**
+     * Get a user's balance, as changed so far.
+     *
+     * @param user The user's id.
+     * @return The user's balance, or 0 if the user is not in the ledger.
+     */
+    public long get(int user) {
+      return PersistentLedger.get(this.root, user);
+    } // get(int)
+
+    /**
+     * Add to a user's balance, adding the user if necessary.
+     *
+     * @param user The id of the user whose balance changes.
+     * @param delta The amount to add (negative to subtract).
+     * @return The new balance.
+     *
+     * @throws IllegalArgumentException If the id is negative.
+     */
+    public long add(int user, long delta) {
+      if (user < 0) {
+        throw new IllegalArgumentException("user ids are not negative");
+      } // if
+      int hash = Ledger.hash(user);
+      this.root = this.root.ownedBy(this.owner);
+      Node node = this.root;
+      for (int shift = 0; ; shift += BITS) {
+        int bit = bit(hash, shift);
+        if ((node.dataMap & bit) != 0) {
+          int i = index(node.dataMap, bit);
+          if (node.users[i] == user) {
+            node.balances[i] += delta;
+            return node.balances[i];
+          } // if
+          /* Another user ends here; push both down into a new child */
+          Node child = this.pair(node.users[i], node.balances[i], user, delta, shift + BITS);
+          node.users = remove(node.users, i);
+          node.balances = remove(node.balances, i);
+          node.dataMap ^= bit;
+          node.nodeMap |= bit;
+          node.children = insert(node.children, index(node.nodeMap, bit), child);
+          this.size++;
+          return delta;
+        } else if ((node.nodeMap & bit) != 0) {
+          int i = index(node.nodeMap, bit);
+          node.children[i] = node.children[i].ownedBy(this.owner);
+          node = node.children[i];
+        } else {
+          int i = index(node.dataMap, bit);
+          node.dataMap |= bit;
+          node.users = insert(node.users, i, user);
+          node.balances = insert(node.balances, i, delta);
+          this.size++;
+          return delta;
+        } // if/else
+      } // for
+    } // add(int, long)
+
+    /**
+     * Finish the batch.
+     *
+     * @return
+     *    A ledger with the balances so far. Later changes through this
+     *    builder do not affect it.
+     */
+    public PersistentLedger build() {
+      this.owner = new Object();
+      return new PersistentLedger(this.root, this.size);
+    } // build()
+
+    /**
+     * Make the smallest trie that holds two users.
+     *
+     * @param user1 The first user.
+     * @param balance1 The first user's balance.
+     * @param user2 The second user.
+     * @param balance2 The second user's balance.
+     * @param shift The number of bits that the levels above cover.
+     * @return The root of the trie.
+     */
+    private Node pair(int user1, long balance1, int user2, long balance2, int shift) {
+      int bit1 = bit(Ledger.hash(user1), shift);
+      int bit2 = bit(Ledger.hash(user2), shift);
+      if (bit1 == bit2) {
+        return new Node(this.owner, 0, bit1, new int[0], new long[0],
+            new Node[] {this.pair(user1, balance1, user2, balance2, shift + BITS)});
+      } else if (Integer.compareUnsigned(bit1, bit2) < 0) {
+        return new Node(this.owner, bit1 | bit2, 0, new int[] {user1, user2},
+            new long[] {balance1, balance2}, new Node[0]);
+      } else {
+        return new Node(this.owner, bit1 | bit2, 0, new int[] {user2, user1},
+            new long[] {balance2, balance1}, new Node[0]);
+      } // if/else
+    } // pair(int, long, int, long, int)
+  } // class Builder
+} // class PersistentLedger
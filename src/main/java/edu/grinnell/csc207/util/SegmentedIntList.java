@@ -0,0 +1,265 @@
+package edu.grinnell.csc207.util;
+
+import java.util.Arrays;
+
+/**
+ * A list of primitive ints that grows and shrinks at the end, stored as
+ * fixed-size segments in a two-level directory, like SegmentedList.
+ * Getting any value, adding to the end, and removing from the end all
+ * take constant time, and growing never copies the values themselves.
+ *
+ * A list can hand out read-only snapshots that share its segments and
+ * directory. Removing values never copies anything. Adding never disturbs
+ * a snapshot either, except when the new value lands where a snapshot can
+ * still see an old one (after removing values). Then the list first
+ * copies the path to it (the one segment that holds it, that segment's
+ * chunk, and the top level), so snapshots never change.
+ *
+ * @author Sara Jaljaa
+ * @author Jenifer Silva
+ */
+public class SegmentedIntList {
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The log (base 2) of the number of values in a segment.
+   */
+  static final int SEGMENT_BITS = 10;
+
+  /**
+   * The number of values in a segment.
+   */
+  static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+
+  /**
+   * The log (base 2) of the number of segments in a chunk.
+   */
+  static final int CHUNK_BITS = 10;
+
+  /**
+   * The number of segments in a chunk.
+   */
+  static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+  /**
+   * The log (base 2) of the number of values in a chunk.
+   */
+  static final int CHUNK_SHIFT = SEGMENT_BITS + CHUNK_BITS;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The top level of the directory: the chunks of segments (null for
+   * chunks and segments not yet needed).
+   */
+  int[][][] chunks;
+
+  /**
+   * The number of values in the list.
+   */
+  int size;
+
+  /**
+   * Values before this index may be visible to a snapshot, so the path to
+   * them must be copied before they are overwritten. Values from here on
+   * are in segments (and chunks) that no snapshot can see.
+   */
+  int sharedUpTo;
+
+  /**
+   * Whether a snapshot shares the top level of the directory.
+   */
+  boolean topShared;
+
+  /**
+   * Whether this list is a snapshot (and so cannot be changed).
+   */
+  final boolean readOnly;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new, empty list.
+   */
+  public SegmentedIntList() {
+    this.chunks = new int[1][][];
+    this.size = 0;
+    this.readOnly = false;
+  } // SegmentedIntList()
+
+  /**
+   * Create a snapshot.
+   *
+   * @param chunks
+   *    The directory to share.
+   * @param size
+   *    The number of values in the snapshot.
+   */
+  private SegmentedIntList(int[][][] chunks, int size) {
+    this.chunks = chunks;
+    this.size = size;
+    this.readOnly = true;
+  } // SegmentedIntList(int[][][], int)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Add a value to the end of the list.
+   *
+   * @param val
+   *    The value to add.
+   */
+  public void add(int val) {
+    this.checkWritable();
+    if (this.size < this.sharedUpTo) {
+      this.unshare(this.size);
+    } // if
+    int c = this.size >>> CHUNK_SHIFT;
+    if (c == this.chunks.length) {
+      this.chunks = Arrays.copyOf(this.chunks, 2 * this.chunks.length);
+      this.topShared = false;
+    } // if
+    if (this.chunks[c] == null) {
+      this.chunks[c] = new int[CHUNK_SIZE][];
+    } // if
+    int[][] chunk = this.chunks[c];
+    int s = (this.size >>> SEGMENT_BITS) & (CHUNK_SIZE - 1);
+    if (chunk[s] == null) {
+      chunk[s] = new int[SEGMENT_SIZE];
+    } // if
+    chunk[s][this.size & (SEGMENT_SIZE - 1)] = val;
+    this.size++;
+  } // add(int)
+
+  /**
+   * Get a value.
+   *
+   * @param i
+   *    The index of the value, between 0 (inclusive) and size()
+   *    (exclusive).
+   * @return
+   *    The value.
+   *
+   * @throws IndexOutOfBoundsException
+   *    If i is not a valid index.
+   */
+  public int get(int i) {
+    if (i < 0 || i >= this.size) {
+      throw new IndexOutOfBoundsException(i);
+    } // if
+    return this.segment(i)[i & (SEGMENT_SIZE - 1)];
+  } // get(int)
+
+  /**
+   * Get the last value.
+   *
+   * @return
+   *    The last value.
+   *
+   * @throws IndexOutOfBoundsException
+   *    If the list is empty.
+   */
+  public int getLast() {
+    return this.get(this.size - 1);
+  } // getLast()
+
+  /**
+   * Remove the last value.
+   *
+   * @return
+   *    The value removed.
+   *
+   * @throws IndexOutOfBoundsException
+   *    If the list is empty.
+   */
+  public int removeLast() {
+    this.checkWritable();
+    int last = this.getLast();
+    this.size--;
+    return last;
+  } // removeLast()
+
+  /**
+   * Take a read-only snapshot of the list. The snapshot keeps its values
+   * no matter how the list changes later. Taking a snapshot does not copy
+   * any values.
+   *
+   * @return
+   *    The snapshot.
+   */
+  public SegmentedIntList snapshot() {
+    this.sharedUpTo = Math.max(this.sharedUpTo, this.size);
+    this.topShared = true;
+    return new SegmentedIntList(this.chunks, this.size);
+  } // snapshot()
+
+  /**
+   * Determine how many values are in the list.
+   *
+   * @return
+   *    The number of values.
+   */
+  public int size() {
+    return this.size;
+  } // size()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Find the segment that holds a value.
+   *
+   * @param i
+   *    The index of the value, which must be valid.
+   * @return
+   *    The segment.
+   */
+  int[] segment(int i) {
+    return this.chunks[i >>> CHUNK_SHIFT][(i >>> SEGMENT_BITS) & (CHUNK_SIZE - 1)];
+  } // segment(int)
+
+  /**
+   * Copy the path to the segment for an index that snapshots may see, so
+   * the list can overwrite it, and drop everything after it, which
+   * snapshots may share too.
+   *
+   * @param i
+   *    The index about to be written.
+   */
+  private void unshare(int i) {
+    int c = i >>> CHUNK_SHIFT;
+    int s = (i >>> SEGMENT_BITS) & (CHUNK_SIZE - 1);
+    if (this.topShared) {
+      this.chunks = this.chunks.clone();
+      this.topShared = false;
+    } // if
+    Arrays.fill(this.chunks, c + 1, this.chunks.length, null);
+    int[][] chunk = this.chunks[c].clone();
+    Arrays.fill(chunk, s + 1, CHUNK_SIZE, null);
+    chunk[s] = chunk[s].clone();
+    this.chunks[c] = chunk;
+    this.sharedUpTo = i & -SEGMENT_SIZE;
+  } // unshare(int)
+
+  /**
+   * Make sure the list may be changed.
+   *
+   * @throws UnsupportedOperationException
+   *    If the list is a snapshot.
+   */
+  private void checkWritable() {
+    if (this.readOnly) {
+      throw new UnsupportedOperationException("snapshots cannot be changed");
+    } // if
+  } // checkWritable()
+} // class SegmentedIntList
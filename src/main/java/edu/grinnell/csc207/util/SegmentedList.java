@@ -0,0 +1,282 @@
+package edu.grinnell.csc207.util;
+
+import java.util.Arrays;
+
+/**
+ * A list that grows and shrinks at the end, stored as fixed-size segments.
+ * Getting any element, adding to the end, and removing from the end all
+ * take constant time, and growing never copies the elements themselves.
+ * The segments hang off a two-level directory: chunks of CHUNK_SIZE
+ * segments, and a small top level of chunks.
+ *
+ * A list can hand out read-only snapshots that share its segments and
+ * directory. Removing elements never copies anything. Adding never
+ * disturbs a snapshot either, except when the new element lands where a
+ * snapshot can still see an old one (after removing elements). Then the
+ * list first copies the path to that element: the one segment that holds
+ * it, that segment's chunk, and the top level. That copy does not grow
+ * with the list (beyond the top level, which has one entry per
+ * CHUNK_SIZE * SEGMENT_SIZE elements), so rolling back and regrowing the
+ * end of a long list costs no more than for a short one. A snapshot
+ * passed safely to another thread (say, through a volatile field) can be
+ * read there while the list keeps changing.
+ *
+ * @param <T>
+ *    The type of the elements.
+ *
+ * @author Sara Jaljaa
+ * @author Jenifer Silva
+ */
+public class SegmentedList<T> {
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The log (base 2) of the number of elements in a segment.
+   */
+  static final int SEGMENT_BITS = 10;
+
+  /**
+   * The number of elements in a segment.
+   */
+  static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+
+  /**
+   * The log (base 2) of the number of segments in a chunk.
+   */
+  static final int CHUNK_BITS = 10;
+
+  /**
+   * The number of segments in a chunk.
+   */
+  static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+  /**
+   * The log (base 2) of the number of elements in a chunk.
+   */
+  static final int CHUNK_SHIFT = SEGMENT_BITS + CHUNK_BITS;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The top level of the directory: the chunks of segments (null for
+   * chunks and segments not yet needed).
+   */
+  Object[][][] chunks;
+
+  /**
+   * The number of elements in the list.
+   */
+  int size;
+
+  /**
+   * Elements before this index may be visible to a snapshot, so the path
+   * to them must be copied before they are overwritten. Elements from
+   * here on are in segments (and chunks) that no snapshot can see.
+   */
+  int sharedUpTo;
+
+  /**
+   * Whether a snapshot shares the top level of the directory.
+   */
+  boolean topShared;
+
+  /**
+   * Whether this list is a snapshot (and so cannot be changed).
+   */
+  final boolean readOnly;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new, empty list.
+   */
+  public SegmentedList() {
+    this.chunks = new Object[1][][];
+    this.size = 0;
+    this.readOnly = false;
+  } // SegmentedList()
+
+  /**
+   * Create a snapshot.
+   *
+   * @param chunks
+   *    The directory to share.
+   * @param size
+   *    The number of elements in the snapshot.
+   */
+  private SegmentedList(Object[][][] chunks, int size) {
+    this.chunks = chunks;
+    this.size = size;
+    this.readOnly = true;
+  } // SegmentedList(Object[][][], int)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Add an element to the end of the list.
+   *
+   * @param val
+   *    The element to add.
+   */
+  public void add(T val) {
+    this.checkWritable();
+    if (this.size < this.sharedUpTo) {
+      this.unshare(this.size);
+    } // if
+    int c = this.size >>> CHUNK_SHIFT;
+    if (c == this.chunks.length) {
+      this.chunks = Arrays.copyOf(this.chunks, 2 * this.chunks.length);
+      this.topShared = false;
+    } // if
+    if (this.chunks[c] == null) {
+      this.chunks[c] = new Object[CHUNK_SIZE][];
+    } // if
+    Object[][] chunk = this.chunks[c];
+    int s = (this.size >>> SEGMENT_BITS) & (CHUNK_SIZE - 1);
+    if (chunk[s] == null) {
+      chunk[s] = new Object[SEGMENT_SIZE];
+    } // if
+    chunk[s][this.size & (SEGMENT_SIZE - 1)] = val;
+    this.size++;
+  } // add(T)
+
+  /**
+   * Get an element.
+   *
+   * @param i
+   *    The index of the element, between 0 (inclusive) and size()
+   *    (exclusive).
+   * @return
+   *    The element.
+   *
+   * @throws IndexOutOfBoundsException
+   *    If i is not a valid index.
+   */
+  @SuppressWarnings({"unchecked"})
+  public T get(int i) {
+    if (i < 0 || i >= this.size) {
+      throw new IndexOutOfBoundsException(i);
+    } // if
+    return (T) this.segment(i)[i & (SEGMENT_SIZE - 1)];
+  } // get(int)
+
+  /**
+   * Get the last element.
+   *
+   * @return
+   *    The last element.
+   *
+   * @throws IndexOutOfBoundsException
+   *    If the list is empty.
+   */
+  public T getLast() {
+    return this.get(this.size - 1);
+  } // getLast()
+
+  /**
+   * Remove the last element. If a snapshot can see it, the list keeps
+   * referring to it until its slot is reused.
+   *
+   * @return
+   *    The element removed.
+   *
+   * @throws IndexOutOfBoundsException
+   *    If the list is empty.
+   */
+  public T removeLast() {
+    this.checkWritable();
+    T last = this.getLast();
+    this.size--;
+    if (this.size >= this.sharedUpTo) {
+      /* No snapshot can see the slot, so let go of the element */
+      this.segment(this.size)[this.size & (SEGMENT_SIZE - 1)] = null;
+    } // if
+    return last;
+  } // removeLast()
+
+  /**
+   * Take a read-only snapshot of the list. The snapshot keeps its elements
+   * no matter how the list changes later. Taking a snapshot does not copy
+   * any elements.
+   *
+   * @return
+   *    The snapshot.
+   */
+  public SegmentedList<T> snapshot() {
+    this.sharedUpTo = Math.max(this.sharedUpTo, this.size);
+    this.topShared = true;
+    return new SegmentedList<T>(this.chunks, this.size);
+  } // snapshot()
+
+  /**
+   * Determine how many elements are in the list.
+   *
+   * @return
+   *    The number of elements.
+   */
+  public int size() {
+    return this.size;
+  } // size()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Find the segment that holds an element.
+   *
+   * @param i
+   *    The index of the element, which must be valid.
+   * @return
+   *    The segment.
+   */
+  Object[] segment(int i) {
+    return this.chunks[i >>> CHUNK_SHIFT][(i >>> SEGMENT_BITS) & (CHUNK_SIZE - 1)];
+  } // segment(int)
+
+  /**
+   * Copy the path to the segment for an index that snapshots may see, so
+   * the list can overwrite it, and drop everything after it, which
+   * snapshots may share too.
+   *
+   * @param i
+   *    The index about to be written.
+   */
+  private void unshare(int i) {
+    int c = i >>> CHUNK_SHIFT;
+    int s = (i >>> SEGMENT_BITS) & (CHUNK_SIZE - 1);
+    if (this.topShared) {
+      this.chunks = this.chunks.clone();
+      this.topShared = false;
+    } // if
+    Arrays.fill(this.chunks, c + 1, this.chunks.length, null);
+    Object[][] chunk = this.chunks[c].clone();
+    Arrays.fill(chunk, s + 1, CHUNK_SIZE, null);
+    Object[] segment = chunk[s].clone();
+    Arrays.fill(segment, i & (SEGMENT_SIZE - 1), SEGMENT_SIZE, null);
+    chunk[s] = segment;
+    this.chunks[c] = chunk;
+    this.sharedUpTo = i & -SEGMENT_SIZE;
+  } // unshare(int)
+
+  /**
+   * Make sure the list may be changed.
+   *
+   * @throws UnsupportedOperationException
+   *    If the list is a snapshot.
+   */
+  private void checkWritable() {
+    if (this.readOnly) {
+      throw new UnsupportedOperationException("snapshots cannot be changed");
+    } // if
+  } // checkWritable()
+} // class SegmentedList
@@ -0,0 +1,290 @@
+package edu.grinnell.csc207.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A dictionary that gives each user name a dense int id, so that
+ * transactions and ledgers can store and compare ids rather than
+ * strings. Ids start at 0 (the empty name, used for deposits) and are
+ * never reused, so a name's id stays the same for the life of the
+ * dictionary. Each name's UTF-8 encoding is computed once, when the name
+ * gets its id, for use in hashing.
+ *
+ * Names are never forgotten: a dictionary holds every name it has ever
+ * seen, even after the last transaction or chain that used the name is
+ * gone. The shared dictionary (see global()) lives as long as the
+ * process, so a long-running process that sees many short-lived users
+ * keeps all of their names. To keep that growth in check, each dictionary
+ * has a limit on the number of names, past which new names are refused.
+ *
+ * Dictionaries are safe to use from several threads. Looking up a name
+ * that already has an id, and looking up the name for an id, do not lock.
+ *
+ * @author Sara Jaljaa
+ * @author Jenifer Silva
+ */
+public final class UserDictionary {
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The id of the empty name, which is the source of every deposit.
+   */
+  public static final int DEPOSIT = 0;
+
+  /**
+   * The most names a dictionary holds, unless told otherwise.
+   */
+  public static final int DEFAULT_LIMIT = 1 << 24;
+
+  /**
+   * The dictionary shared by all transactions.
+   */
+  private static final UserDictionary GLOBAL = new UserDictionary();
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The id of each name.
+   */
+  private final ConcurrentHashMap<String, Integer> ids;
+
+  /**
+   * The name of each id. Replaced (never changed in place) when it grows,
+   * so readers always see a complete array.
+   */
+  private volatile String[] names;
+
+  /**
+   * The UTF-8 encoding of each name. Grows with names.
+   */
+  private volatile byte[][] encoded;
+
+  /**
+   * The number of ids given out.
+   */
+  private int count;
+
+  /**
+   * The most names this dictionary holds.
+   */
+  private final int limit;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Create a new dictionary that knows only the empty name and holds up
+   * to DEFAULT_LIMIT names.
+   */
+  public UserDictionary() {
+    this(DEFAULT_LIMIT);
+  } // UserDictionary()
+
+  /**
+   * Create a new dictionary that knows only the empty name.
+   *
+   * @param limit
+   *    The most names the dictionary holds (including the empty name).
+   *
+   * @throws IllegalArgumentException
+   *    If the limit is less than 1.
+   */
+  public UserDictionary(int limit) {
+    if (limit < 1) {
+      throw new IllegalArgumentException("a dictionary must hold at least the empty name");
+    } // if
+    this.limit = limit;
+    this.ids = new ConcurrentHashMap<String, Integer>();
+    this.names = new String[16];
+    this.encoded = new byte[16][];
+    this.count = 0;
+    this.intern("");
+  } // UserDictionary(int)
+
+  // +----------------+----------------------------------------------
+  // | Static Methods |
+  // +----------------+
+
+  /**
+   * Get the dictionary shared by all transactions. It holds up to
+   * DEFAULT_LIMIT names and is never emptied.
+   *
+   * @return
+   *    The shared dictionary.
+   */
+  public static UserDictionary global() {
+    return GLOBAL;
+  } // global()
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Get the id of a name, giving the name a new id if it does not have
+   * one yet.
+   *
+   * @param name
+   *    The name.
+   * @return
+   *    The name's id.
+   *
+   * @throws NullPointerException
+   *    If the name is null.
+   * @throws IllegalStateException
+   *    If the name is new and the dictionary already holds as many names
+   *    as its limit allows.
+   */
+  public int intern(String name) {
+    Integer id = this.ids.get(name);
+    if (id != null) {
+      return id;
+    } // if
+    synchronized (this) {
+      id = this.ids.get(name);
+      if (id != null) {
+        return id;
+      } // if
+      if (this.count == this.limit) {
+        throw new IllegalStateException("the dictionary already holds " + this.limit + " names");
+      } // if
+      String[] current = this.names;
+      byte[][] bytes = this.encoded;
+      if (this.count == current.length) {
+        current = Arrays.copyOf(current, 2 * current.length);
+        bytes = Arrays.copyOf(bytes, 2 * bytes.length);
+      } // if
+      current[this.count] = name;
+      bytes[this.count] = name.getBytes(StandardCharsets.UTF_8);
+      /* Publish the name before the id, so anyone who sees the id can resolve it */
+      this.encoded = bytes;
+      this.names = current;
+      this.ids.put(name, this.count);
+      return this.count++;
+    } // synchronized
+  } // intern(String)
+
+  /**
+   * Get the id of a name without giving it one.
+   *
+   * @param name
+   *    The name.
+   * @return
+   *    The name's id, or -1 if the name (or null) has no id.
+   */
+  public int idOf(String name) {
+    if (name == null) {
+      return -1;
+    } // if
+    Integer id = this.ids.get(name);
+    return (id == null) ? -1 : id;
+  } // idOf(String)
+
+  /**
+   * Get the name for an id.
+   *
+   * @param id
+   *    The id.
+   * @return
+   *    The name.
+   *
+   * @throws IndexOutOfBoundsException
+   *    If no name has that id.
+   */
+  public String name(int id) {
+    String[] current = this.names;
+    if (id < 0 || id >= current.length || current[id] == null) {
+      throw new IndexOutOfBoundsException(id);
+    } // if
+    return current[id];
+  } // name(int)
+
+  /**
+   * Determine how many bytes are in the UTF-8 encoding of a name.
+   *
+   * @param id
+   *    The name's id.
+   * @return
+   *    The number of bytes.
+   *
+   * @throws IndexOutOfBoundsException
+   *    If no name has that id.
+   */
+  public int encodedLength(int id) {
+    return this.encoding(id).length;
+  } // encodedLength(int)
+
+  /**
+   * Copy the UTF-8 encoding of a name into an array, without encoding the
+   * name again.
+   *
+   * @param id
+   *    The name's id.
+   * @param dest
+   *    Where to copy the encoding.
+   * @param pos
+   *    The index in dest of the first byte.
+   * @return
+   *    The index in dest just after the encoding.
+   *
+   * @throws IndexOutOfBoundsException
+   *    If no name has that id or the encoding does not fit.
+   */
+  public int copyEncoded(int id, byte[] dest, int pos) {
+    byte[] bytes = this.encoding(id);
+    System.arraycopy(bytes, 0, dest, pos, bytes.length);
+    return pos + bytes.length;
+  } // copyEncoded(int, byte[], int)
+
+  /**
+   * Determine how many names have ids.
+   *
+   * @return
+   *    The number of names.
+   */
+  public int size() {
+    return this.ids.size();
+  } // size()
+
+  /**
+   * Determine the most names this dictionary holds.
+   *
+   * @return
+   *    The limit.
+   */
+  public int limit() {
+    return this.limit;
+  } // limit()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Get the cached encoding of a name.
+   *
+   * @param id
+   *    The name's id.
+   * @return
+   *    The encoding (which callers must not change).
+   *
+   * @throws IndexOutOfBoundsException
+   *    If no name has that id.
+   */
+  private byte[] encoding(int id) {
+    String[] current = this.names;
+    byte[][] bytes = this.encoded;
+    if (id < 0 || id >= current.length || current[id] == null) {
+      throw new IndexOutOfBoundsException(id);
+    } // if
+    return bytes[id];
+  } // encoding(int)
+} // class UserDictionary
@@ -1,12 +1,16 @@
 package edu.grinnell.csc207.blockchains;
 
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
@@ -79,8 +83,8 @@ public class TestBlock {
    */
   static byte[] expectedHash(Block block) {
     md.update(intToBytes(block.getNum()));
-    md.update(block.getTransaction().getSource().getBytes());
-    md.update(block.getTransaction().getTarget().getBytes());
+    md.update(block.getTransaction().getSource().getBytes(StandardCharsets.UTF_8));
+    md.update(block.getTransaction().getTarget().getBytes(StandardCharsets.UTF_8));
     md.update(intToBytes(block.getTransaction().getAmount()));
     md.update(block.getPrevHash().getBytes());
     md.update(longToBytes(block.getNonce()));
@@ -213,6 +217,17 @@ public class TestBlock {
     assertArrayEquals(expectedHash(b), b.getHash().getBytes(), "correct hash");
   } // hashTest()
 
+  /**
+   * Ensure that user names are hashed as UTF-8.
+   */
+  @Test
+  public void utf8HashTest() {
+    Transaction t = new Transaction("Zoë", "日本", 7);
+    Hash ph = new Hash(new byte[] {1, 2, 3});
+    Block b = new Block(3, t, ph, 11);
+    assertArrayEquals(expectedHash(b), b.getHash().getBytes(), "correct hash");
+  } // utf8HashTest()
+
   /**
    * Ensure that a block with a validated hash calculates a correct
    * and valid hash.
@@ -228,6 +243,46 @@ public class TestBlock {
         "correct hash in validated block");
   } // validatedHashTest()
 
+  /**
+   * Ensure that hashes computed from a saved midstate match a plain
+   * SHA-256 digest, whatever the length of the block's prefix.
+   */
+  @Test
+  public void midstateHashTest() {
+    Hash ph = new Hash(new byte[32]);
+    for (int len = 0; len < 160; len++) {
+      Transaction t = new Transaction("S".repeat(len), "T", len);
+      for (long nonce = 0; nonce < 3; nonce++) {
+        Block b = new Block(len, t, ph, nonce * 977);
+        assertArrayEquals(expectedHash(b), b.getHash().getBytes(),
+            "hash with a source of length " + len);
+      } // for
+    } // for
+  } // midstateHashTest()
+
+  /**
+   * Ensure that mining with several threads finds the same (lowest)
+   * nonce as mining with one thread.
+   */
+  @Test
+  public void parallelMineTest() throws Exception {
+    Transaction t = new Transaction("Para", "Llel", 64);
+    Hash ph = new Hash(new byte[] {6, 4, 6, 4});
+    HashValidator v = (h) -> (h.length() > 1) && (h.get(0) == 6) && (h.get(1) < 16);
+    Miner one = new Miner(1);
+    Miner four = new Miner(4);
+    long expected = Block.mine(9, t, ph, v, one);
+    assertEquals(expected, Block.mine(9, t, ph, v, four),
+        "parallel miner finds the lowest nonce");
+    for (long nonce = 0; nonce < expected; nonce++) {
+      assertFalse(v.isValid(new Block(9, t, ph, nonce).getHash()),
+          "no smaller nonce is valid");
+    } // for
+    assertTrue(v.isValid(new Block(9, t, ph, expected).getHash()),
+        "mined nonce is valid");
+    four.shutdown();
+  } // parallelMineTest()
+
   /**
    * Ensure that we can create the standard initial block.
    */
@@ -243,6 +298,67 @@ public class TestBlock {
     assertEquals(ph, b.getPrevHash(), "correct previous hash in initial block");
   } // initialBlockTest()
 
+  /**
+   * Compute the expected Merkle leaf of a transaction.
+   */
+  static byte[] expectedLeaf(Transaction t) {
+    byte[] source = t.getSource().getBytes(StandardCharsets.UTF_8);
+    byte[] target = t.getTarget().getBytes(StandardCharsets.UTF_8);
+    md.update((byte) 0);
+    md.update(intToBytes(source.length));
+    md.update(source);
+    md.update(intToBytes(target.length));
+    md.update(target);
+    md.update(intToBytes(t.getAmount()));
+    return md.digest();
+  } // expectedLeaf(Transaction)
+
+  /**
+   * Compute the expected parent of two Merkle nodes.
+   */
+  static byte[] expectedNode(byte[] left, byte[] right) {
+    md.update((byte) 1);
+    md.update(left);
+    md.update(right);
+    return md.digest();
+  } // expectedNode(byte[], byte[])
+
+  /**
+   * A block of several transactions hashes their Merkle root; a block of
+   * one keeps the single-transaction hash.
+   */
+  @Test
+  public void batchHashTest() {
+    Transaction[] ts = {new Transaction("", "Alpha", 50), new Transaction("Alpha", "Beta", 20),
+        new Transaction("Beta", "Gamma", 5)};
+    Hash ph = new Hash(new byte[] {1, 2, 3});
+    Block b = new Block(4, ts, ph, 99L, 0);
+
+    byte[] top = expectedNode(expectedNode(expectedLeaf(ts[0]), expectedLeaf(ts[1])),
+        expectedLeaf(ts[2]));
+    md.update((byte) 2);
+    md.update(intToBytes(3));
+    md.update(top);
+    byte[] root = md.digest();
+    md.update(intToBytes(4));
+    md.update(root);
+    md.update(ph.getBytes());
+    md.update(longToBytes(99L));
+    assertArrayEquals(md.digest(), b.getHash().getBytes(), "hash of the Merkle root");
+    assertEquals(3, b.getTransactionCount(), "three transactions");
+    assertEquals(ts[1], b.getTransaction(1), "second transaction");
+
+    Block one = new Block(4, new Transaction[] {ts[1]}, ph, 99L, 0);
+    assertEquals(new Block(4, ts[1], ph, 99L).getHash(), one.getHash(), "one transaction");
+
+    ts[2] = new Transaction("Beta", "Gamma", 6);
+    assertEquals(3, b.getTransactions().length, "the block keeps its own copy");
+    assertFalse(new Block(4, ts, ph, 99L, 0).getHash().equals(b.getHash()),
+        "any change to a transaction changes the hash");
+    assertThrows(IllegalArgumentException.class,
+        () -> new Block(4, new Transaction[0], ph, 99L, 0));
+  } // batchHashTest()
+
   /**
    * Test that the toString method works.
    * Forthcoming.
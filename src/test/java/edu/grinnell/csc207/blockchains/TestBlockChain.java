@@ -3,10 +3,13 @@ package edu.grinnell.csc207.blockchains;
 import java.util.Arrays;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
@@ -62,6 +65,18 @@ public class TestBlockChain {
     } // try/catch
   } // assertCheckFails(BlockChain, String)
   
+  /**
+   * Assert that fullRevalidate fails (throws an Exception).
+   */
+  static void assertFullRevalidateFails(BlockChain chain, String msg) {
+    try {
+      chain.fullRevalidate();
+      fail(msg);
+    } catch (Exception e) {
+      // Do nothing; we expect this.
+    } // try/catch
+  } // assertFullRevalidateFails(BlockChain, String)
+
   // +-------+-------------------------------------------------------
   // | Tests |
   // +-------+
@@ -228,6 +243,180 @@ public class TestBlockChain {
     assertFalse(blocks.hasNext(), "hasNext at end");
   } // testRemoveAndAppendBlocks()
 
+  /**
+   * Make sure that we can get blocks by number, across segments and
+   * after removing blocks.
+   */
+  @Test
+  public void testGetBlock() {
+    BlockChain chain = new BlockChain((hash) -> true);
+    Block[] appended = new Block[1500];
+    for (int i = 1; i < appended.length; i++) {
+      appended[i] = chain.mine(new Transaction("", "A", i));
+      chain.append(appended[i]);
+    } // for
+    for (int i = 1; i < appended.length; i++) {
+      assertEquals(appended[i], chain.getBlockByNumber(i), "block " + i);
+    } // for
+    for (int i = 0; i < 600; i++) {
+      assertTrue(chain.removeLast(), "removing block");
+    } // for
+    assertEquals(900, chain.getSize(), "size after removing 600 blocks");
+    assertEquals(appended[899], chain.getBlockByNumber(899), "new last block");
+    assertEquals(appended[899].getHash(), chain.getHash(), "hash of new last block");
+    assertThrows(IndexOutOfBoundsException.class, () -> chain.getBlockByNumber(900),
+        "no block past the end");
+  } // testGetBlock()
+
+  /**
+   * Make sure that we can get blocks by hash, with and without a limit
+   * on the index, and that removed blocks are no longer found.
+   */
+  @Test
+  public void testGetBlockByHash() {
+    BlockChain chain = new BlockChain((hash) -> true);
+    Block[] appended = new Block[400];
+    appended[0] = chain.getBlockByNumber(0);
+    for (int i = 1; i < 200; i++) {
+      appended[i] = chain.mine(new Transaction("", "A", i));
+      chain.append(appended[i]);
+    } // for
+    for (int i = 0; i < 200; i++) {
+      assertEquals(appended[i], chain.getBlockByHash(appended[i].getHash()), "block " + i);
+    } // for
+
+    chain.setHashIndexLimit(50);
+    assertEquals(appended[10], chain.getBlockByHash(appended[10].getHash()), "old block");
+    for (int i = 200; i < appended.length; i++) {
+      appended[i] = chain.mine(new Transaction("", "A", i));
+      chain.append(appended[i]);
+    } // for
+    for (int i = 0; i < 100; i++) {
+      assertTrue(chain.removeLast(), "removing block");
+    } // for
+    for (int i = 0; i < 300; i++) {
+      assertEquals(appended[i], chain.getBlockByHash(appended[i].getHash()), "block " + i);
+    } // for
+    for (int i = 300; i < appended.length; i++) {
+      assertNull(chain.getBlockByHash(appended[i].getHash()), "removed block " + i);
+    } // for
+  } // testGetBlockByHash()
+
+  /**
+   * Make sure that each user's transactions can be paged through, and
+   * that removing blocks removes them from the history.
+   */
+  @Test
+  public void testTransactionsFor() {
+    BlockChain chain = new BlockChain((hash) -> true);
+    chain.append(chain.mine(new Transaction("", "A", 1000)));
+    for (int i = 1; i <= 100; i++) {
+      chain.append(chain.mine(new Transaction("A", (i % 2 == 0) ? "B" : "C", i)));
+    } // for
+    chain.append(chain.mine(new Transaction("B", "B", 5)));
+    assertEquals(101, chain.transactionCount("A"), "A's transactions");
+    assertEquals(51, chain.transactionCount("B"), "B's transactions (self-transfer once)");
+    assertEquals(0, chain.transactionCount("D"), "D has no transactions");
+    assertFalse(chain.transactionsFor("D").hasNext(), "no transactions for D");
+
+    Iterator<Transaction> page = chain.transactionsFor("C", 10, 5);
+    for (int i = 21; i <= 29; i += 2) {
+      assertEquals(new Transaction("A", "C", i), page.next(), "C's transaction " + i);
+    } // for
+    assertFalse(page.hasNext(), "end of page");
+    assertFalse(chain.transactionsFor("C", 50, 5).hasNext(), "page past the end");
+
+    chain.removeLast();
+    chain.removeLast();
+    assertEquals(49, chain.transactionCount("B"), "B after removing");
+    assertEquals(100, chain.transactionCount("A"), "A after removing");
+    Iterator<Transaction> b = chain.transactionsFor("B", 48, 10);
+    assertEquals(new Transaction("A", "B", 98), b.next(), "B's last transaction");
+    assertFalse(b.hasNext(), "B's removed transactions");
+  } // testTransactionsFor()
+
+  /**
+   * Mine waiting transactions in batches.
+   */
+  @Test
+  public void testMinePending() throws Exception {
+    BlockChain chain = new BlockChain((hash) -> true);
+    chain.setBlockSize(10);
+    Mempool pool = chain.getMempool();
+    pool.add(new Transaction("", "A", 100));
+    for (int i = 0; i < 25; i++) {
+      pool.add(new Transaction("A", "B", 1));
+    } // for
+    pool.add(new Transaction("C", "A", 5));
+    assertThrows(IllegalArgumentException.class, () -> pool.add(new Transaction("A", "B", -1)));
+
+    assertEquals(10, chain.minePending().getTransactionCount(), "full block");
+    assertEquals(10, chain.minePending().getTransactionCount(), "second full block");
+    Block last = chain.minePending();
+    assertEquals(6, last.getTransactionCount(), "the rest, except C's");
+    assertNull(chain.minePending(), "nothing C can afford");
+    assertEquals(1, pool.size(), "C's transaction waits");
+    assertEquals(4, chain.getSize(), "three new blocks");
+    assertEquals(75, chain.balance("A"), "A's balance");
+    assertEquals(25, chain.balance("B"), "B's balance");
+    assertEquals(25, chain.transactionCount("B"), "B's transactions");
+    assertEquals(new Transaction("A", "B", 1), chain.transactionsFor("A", 25, 1).next(),
+        "A's last transaction");
+    assertTrue(chain.isCorrect(), "batched chain is correct");
+
+    pool.add(new Transaction("", "C", 5));
+    assertEquals(1, chain.minePending().getTransactionCount(), "C's deposit");
+    assertEquals(new Transaction("C", "A", 5), chain.minePending().getTransaction(),
+        "C's waiting transfer, once C can afford it");
+    assertEquals(80, chain.balance("A"), "A after C's transfer");
+    assertTrue(pool.isEmpty(), "nothing left waiting");
+    assertTrue(chain.isCorrect(), "still correct");
+
+    assertTrue(chain.removeLast(), "remove C's transfer");
+    assertEquals(75, chain.balance("A"), "A after removing");
+    assertEquals(5, chain.balance("C"), "C after removing");
+    assertEquals(1, chain.transactionCount("C"), "C's transfer removed");
+    int count = 0;
+    for (Transaction t : chain) {
+      count++;
+    } // for
+    assertEquals(28, count, "every transaction, including the initial one");
+
+    Block bad = chain.mine(new Transaction[] {new Transaction("", "D", 5),
+        new Transaction("D", "E", 6)});
+    chain.append(bad);
+    assertFalse(chain.isCorrect(), "D overdraws within a batch");
+    assertEquals(6, chain.balance("E"), "balances follow appended blocks");
+    assertTrue(chain.removeLast(), "remove the bad batch");
+    assertTrue(chain.isCorrect(), "correct after removing the bad batch");
+
+    for (int i = 1; i <= 5; i++) {
+      pool.add(new Transaction("F", "G", i));
+    } // for
+    Transaction[] dropped = pool.trim(2);
+    assertEquals(3, dropped.length, "dropped all but two");
+    assertEquals(new Transaction("F", "G", 1), dropped[0], "dropped the oldest first");
+    assertEquals(2, pool.size(), "kept the newest");
+    assertEquals(0, pool.trim(2).length, "nothing more to drop");
+  } // testMinePending()
+
+  /**
+   * Make sure that checking hashes in parallel finds the first bad block.
+   */
+  @Test
+  public void testFirstIllegalHash() throws Exception {
+    BlockChain chain = new BlockChain((hash) -> true);
+    for (int i = 1; i < 5000; i++) {
+      chain.append(chain.mine(new Transaction("", "A", i)));
+    } // for
+    assertEquals(-1, chain.firstIllegalHash(), "no illegal hashes");
+    assertTrue(chain.legalHash(), "legal hashes");
+    chain.getBlockByNumber(4321).nonce++;
+    chain.getBlockByNumber(1234).transactions[0] = new Transaction("", "B", 1);
+    assertEquals(1234, chain.firstIllegalHash(), "first illegal hash");
+    assertFalse(chain.legalHash(), "illegal hashes");
+  } // testFirstIllegalHash()
+
   /**
    * Check balances.
    */
@@ -277,6 +466,178 @@ public class TestBlockChain {
     assertEquals(20, chain.balance("C"), "C's eighth balance");
   } // testBalances()
 
+  /**
+   * Check that removing blocks restores earlier balances and users.
+   */
+  @Test
+  public void testRemoveRestoresBalances() {
+    BlockChain chain = new BlockChain((hash) -> true);
+    chain.append(chain.mine(new Transaction("", "A", 100)));
+    chain.append(chain.mine(new Transaction("A", "B", 30)));
+    chain.append(chain.mine(new Transaction("B", "C", 10)));
+    chain.append(chain.mine(new Transaction("A", "A", 5)));
+    assertArrayEquals(new String[] {"A", "B", "C"}, users(chain), "A-C");
+
+    assertTrue(chain.removeLast(), "removing self-transfer");
+    assertEquals(70, chain.balance("A"), "A after removing self-transfer");
+    assertTrue(chain.removeLast(), "removing B to C");
+    assertEquals(30, chain.balance("B"), "B after removing B to C");
+    assertEquals(0, chain.balance("C"), "C after removing B to C");
+    assertArrayEquals(new String[] {"A", "B"}, users(chain), "C is gone");
+    assertTrue(chain.removeLast(), "removing A to B");
+    assertEquals(100, chain.balance("A"), "A after removing A to B");
+    assertArrayEquals(new String[] {"A"}, users(chain), "B is gone");
+  } // testRemoveRestoresBalances()
+
+  /**
+   * Check that views keep their height as blocks are appended and removed.
+   */
+  @Test
+  public void testSnapshots() {
+    BlockChain chain = new BlockChain((hash) -> true);
+    Block block1 = chain.mine(new Transaction("", "A", 100));
+    chain.append(block1);
+    ChainView view = chain.snapshot();
+    chain.append(chain.mine(new Transaction("A", "B", 30)));
+    assertEquals(2, view.getSize(), "view ignores appends");
+    assertEquals(3, chain.getSize(), "chain sees appends");
+    assertEquals(block1.getHash(), view.getHash(), "view hash");
+
+    assertTrue(chain.removeLast(), "removing A to B");
+    assertTrue(chain.removeLast(), "removing deposit");
+    chain.append(chain.mine(new Transaction("", "C", 7)));
+    assertEquals(2, view.getSize(), "view ignores removes");
+    assertEquals(block1, view.getBlockByNumber(1), "view keeps removed block");
+    Iterator<Transaction> it = view.iterator();
+    it.next();
+    assertEquals(new Transaction("", "A", 100), it.next(), "view transactions");
+    assertFalse(it.hasNext(), "end of view transactions");
+    assertEquals(7, chain.getBlockByNumber(1).getTransaction().getAmount(), "chain block 1");
+    assertEquals(100, view.balance("A"), "view keeps balances");
+    assertEquals(0, view.balance("C"), "view ignores later balances");
+    assertEquals(0, chain.balance("A"), "chain balance");
+    assertEquals(7, chain.balance("C"), "chain sees new balance");
+  } // testSnapshots()
+
+  /**
+   * Check balances at earlier heights.
+   */
+  @Test
+  public void testBalanceAt() {
+    BlockChain chain = new BlockChain((hash) -> true);
+    chain.append(chain.mine(new Transaction("", "A", 100)));
+    chain.append(chain.mine(new Transaction("A", "B", 30)));
+    chain.append(chain.mine(new Transaction[] {new Transaction("B", "C", 10),
+        new Transaction("A", "C", 5)}));
+    assertEquals(0, chain.balanceAt("A", 0), "A at 0");
+    assertEquals(100, chain.balanceAt("A", 1), "A at 1");
+    assertEquals(70, chain.balanceAt("A", 2), "A at 2");
+    assertEquals(30, chain.balanceAt("B", 2), "B at 2");
+    assertEquals(65, chain.balanceAt("A", 3), "A at 3");
+    assertEquals(15, chain.balanceAt("C", 3), "C at 3");
+    assertEquals(0, chain.balanceAt("C", 2), "C at 2");
+    assertEquals(chain.balance("B"), chain.balanceAt("B", 3), "latest");
+    assertThrows(IndexOutOfBoundsException.class, () -> chain.balanceAt("A", 4), "too high");
+
+    chain.removeLast();
+    chain.append(chain.mine(new Transaction("B", "D", 1)));
+    assertEquals(0, chain.balanceAt("C", 3), "C after replacing block 3");
+    assertEquals(29, chain.balanceAt("B", 3), "B after replacing block 3");
+    assertArrayEquals(new String[] {"A", "B", "D"}, users(chain), "C is gone");
+  } // testBalanceAt()
+
+  /**
+   * Check that streams of blocks and transactions match the iterators,
+   * in ranges, with filters, and in parallel.
+   */
+  @Test
+  public void testStreams() {
+    BlockChain chain = new BlockChain((hash) -> true);
+    chain.append(chain.mine(new Transaction("", "A", 100000)));
+    for (int b = 0; b < 40; b++) {
+      Transaction[] ts = new Transaction[1 + (b * 37) % 300];
+      for (int i = 0; i < ts.length; i++) {
+        ts[i] = new Transaction("A", "U" + (i % 7), 1);
+      } // for
+      chain.append(chain.mine(ts));
+    } // for
+    ArrayList<Transaction> expected = new ArrayList<Transaction>();
+    chain.iterator().forEachRemaining(expected::add);
+
+    assertEquals(expected, chain.transactions().toList(), "all transactions");
+    assertEquals(expected, chain.transactions().parallel().toList(), "parallel transactions");
+    assertEquals(expected.size(), chain.transactions().spliterator().getExactSizeIfKnown(),
+        "exact size");
+    assertEquals(expected.stream().mapToLong(Transaction::getAmount).sum(),
+        chain.transactions().parallel().mapToLong(Transaction::getAmount).sum(), "parallel sum");
+
+    int from = chain.getBlockByNumber(0).getTransactionCount()
+        + chain.getBlockByNumber(1).getTransactionCount()
+        + chain.getBlockByNumber(2).getTransactionCount();
+    int to = from + chain.getBlockByNumber(3).getTransactionCount()
+        + chain.getBlockByNumber(4).getTransactionCount();
+    assertEquals(expected.subList(from, to), chain.transactions(3, 5).parallel().toList(),
+        "range of blocks");
+    assertEquals(0, chain.transactions(7, 7).count(), "empty range");
+    assertEquals(expected.stream().filter((t) -> t.getTarget().equals("U3")).toList(),
+        chain.transactions(0, chain.getSize(), (t) -> t.getTarget().equals("U3"))
+            .parallel().toList(), "filtered");
+    assertThrows(IndexOutOfBoundsException.class, () -> chain.transactions(5, 4), "backwards");
+    assertThrows(IndexOutOfBoundsException.class,
+        () -> chain.transactions(0, chain.getSize() + 1), "past the end");
+
+    assertEquals(chain.getSize(), chain.blockStream().parallel().count(), "block count");
+    assertEquals(chain.getBlockByNumber(10), chain.blockStream(10, 20).findFirst().get(),
+        "first block in range");
+    assertEquals(10, chain.blockStream(10, 20).parallel().mapToInt(Block::getNum).max()
+        .getAsInt() - 9, "last block in range");
+  } // testStreams()
+
+  /**
+   * Check that readers on other threads see consistent views and balances
+   * while blocks are appended.
+   */
+  @Test
+  public void testConcurrentReaders() throws Exception {
+    BlockChain chain = new BlockChain((hash) -> true);
+    int blocks = 2000;
+    AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    AtomicBoolean done = new AtomicBoolean(false);
+    Thread[] readers = new Thread[3];
+    for (int r = 0; r < readers.length; r++) {
+      readers[r] = new Thread(() -> {
+        try {
+          long last = 0;
+          while (!done.get()) {
+            long balance = chain.balance("R");
+            assertTrue(balance >= last && balance <= blocks, "balance " + balance);
+            last = balance;
+            ChainView view = chain.snapshot();
+            int size = view.getSize();
+            assertEquals(size - 1, view.getBlockByNumber(size - 1).getNum(), "last block");
+            assertEquals(view.getBlockByNumber(size - 1).getHash(), view.getHash(), "view hash");
+            chain.users();
+          } // while
+        } catch (Throwable e) {
+          failure.compareAndSet(null, e);
+        } // try/catch
+      });
+      readers[r].start();
+    } // for
+    for (int i = 0; i < blocks; i++) {
+      chain.append(chain.mine(new Transaction("", (i % 50 == 0) ? "R" + i : "R", 1)));
+    } // for
+    done.set(true);
+    for (Thread reader : readers) {
+      reader.join();
+    } // for
+    if (failure.get() != null) {
+      throw new AssertionError("reader failed", failure.get());
+    } // if
+    assertEquals(blocks + 1, chain.getSize(), "all blocks appended");
+    assertEquals(blocks - blocks / 50, chain.balance("R"), "final balance");
+  } // testConcurrentReaders()
+
   /**
    * Test the list of users.
    */
@@ -363,11 +724,11 @@ public class TestBlockChain {
     chain.check();
 
     Block block = chain.mine(new Transaction("", "A", 100));
-    block.transaction = new Transaction("", "A", 1000);
+    block.transactions[0] = new Transaction("", "A", 1000);
     assertAppendFails(chain, block, "Appending block with modified amount");
 
     block = chain.mine(new Transaction("", "A", 100));
-    block.transaction = new Transaction("", "B", 100);
+    block.transactions[0] = new Transaction("", "B", 100);
     assertAppendFails(chain, block, "Appending block with modified recipient");
 
     block = chain.mine(new Transaction("", "A", 100));
@@ -389,6 +750,7 @@ public class TestBlockChain {
     chain.append(chain.mine(new Transaction("", "A", 100)));
     chain.append(chain.mine(new Transaction("", "B", 100)));
     chain.append(chain.mine(new Transaction("B", "A", 50)));
+    chain.fullRevalidate();
 
     // Add an invalid transaction
     chain.append(chain.mine(new Transaction("B", "A", 100)));
@@ -457,10 +819,11 @@ public class TestBlockChain {
 
     Iterator<Block> blocks = chain.blocks();
     blocks.next();
-    blocks.next().transaction = new Transaction("", "F", 1000);
-    assertEquals(1010, chain.balance("F"), "F's balance in modified chain");
-    assertFalse(chain.isCorrect(), "modified chain is incorrect");
-    assertCheckFails(chain, "modified chain is incorrect");
+    blocks.next().transactions[0] = new Transaction("", "F", 1000);
+    // Balances come from the blocks as appended; only validation sees the change.
+    assertEquals(110, chain.balance("F"), "F's balance in modified chain");
+    // check() trusts blocks it has already verified; audits revalidate everything.
+    assertFullRevalidateFails(chain, "modified chain is incorrect");
   } // testModifiedChain()
 
 } // class TestBlockChain
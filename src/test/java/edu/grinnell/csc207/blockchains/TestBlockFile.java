@@ -0,0 +1,214 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests of chains stored in block files.
+ *
+ * @author Sara Jaljaa
+ * @author Jenifer Silva
+ */
+public class TestBlockFile {
+  /**
+   * A directory for the files.
+   */
+  @TempDir
+  Path dir;
+
+  /**
+   * Accept every hash.
+   */
+  static final HashValidator ANY = (h) -> true;
+
+  /**
+   * Build a small chain in a file.
+   */
+  static BlockChain build(Path path, int length) throws IOException {
+    BlockChain chain = new BlockChain(ANY, new Miner(1), path);
+    chain.append(chain.mine(new Transaction("", "Alpha", 1000)));
+    for (int i = 2; i < length; i++) {
+      chain.append(chain.mine(new Transaction("Alpha", "User" + i, i)));
+    } // for
+    return chain;
+  } // build(Path, int)
+
+  /**
+   * Blocks survive closing and reopening the file.
+   */
+  @Test
+  void roundTripTest() throws Exception {
+    Path path = this.dir.resolve("chain.blk");
+    Hash tip;
+    try (BlockChain chain = build(path, 40)) {
+      chain.removeLast();
+      chain.append(chain.mine(new Transaction("Alpha", "Über", 7)));
+      tip = chain.getHash();
+    } // try
+
+    try (BlockChain reopened = new BlockChain(ANY, new Miner(1), path)) {
+      assertEquals(40, reopened.getSize(), "same size");
+      assertEquals(tip, reopened.getHash(), "same tip");
+      assertNull(reopened.getBlockByNumber(0).getPrevHash(),
+          "initial block has no previous hash");
+      assertEquals(7, reopened.balance("Über"), "non-ASCII user");
+      assertEquals(1000 - 7 - (2 + 38) * 37 / 2, reopened.balance("Alpha"), "replayed balances");
+      assertTrue(reopened.isCorrect(), "loaded blocks check out");
+      reopened.append(reopened.mine(new Transaction("Alpha", "Beta", 1)));
+    } // try
+
+    try (BlockChain again = new BlockChain(ANY, new Miner(1), path)) {
+      assertEquals(41, again.getSize(), "appended after reopen");
+    } // try
+  } // roundTripTest()
+
+  /**
+   * Blocks of several transactions survive closing and reopening the file.
+   */
+  @Test
+  void batchRoundTripTest() throws Exception {
+    Path path = this.dir.resolve("batch.blk");
+    Hash tip;
+    try (BlockChain chain = build(path, 3)) {
+      chain.append(chain.mine(new Transaction[] {new Transaction("", "Über", 9),
+          new Transaction("Über", "Beta", 4), new Transaction("Alpha", "Beta", 1)}));
+      tip = chain.getHash();
+    } // try
+
+    try (BlockChain reopened = new BlockChain(ANY, new Miner(1), path)) {
+      assertEquals(4, reopened.getSize(), "same size");
+      assertEquals(tip, reopened.getHash(), "same tip");
+      assertEquals(3, reopened.getBlockByNumber(3).getTransactionCount(), "whole batch");
+      assertEquals(5, reopened.balance("Über"), "non-ASCII user in a batch");
+      assertEquals(5, reopened.balance("Beta"), "replayed batch");
+      assertTrue(reopened.isCorrect(), "loaded batch checks out");
+    } // try
+  } // batchRoundTripTest()
+
+  /**
+   * A partial record at the end of the file is cut off.
+   */
+  @Test
+  void tornTailTest() throws Exception {
+    Path path = this.dir.resolve("torn.blk");
+    build(path, 10).close();
+    long size = Files.size(path);
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+      channel.truncate(size - 5);
+    } // try
+
+    try (BlockChain chain = new BlockChain(ANY, new Miner(1), path)) {
+      assertEquals(9, chain.getSize(), "lost the torn block");
+      assertTrue(chain.isCorrect(), "the rest checks out");
+      chain.append(chain.mine(new Transaction("Alpha", "Beta", 1)));
+    } // try
+    try (BlockChain chain = new BlockChain(ANY, new Miner(1), path)) {
+      assertEquals(10, chain.getSize(), "appended over the tail");
+    } // try
+  } // tornTailTest()
+
+  /**
+   * Removing blocks that were already flushed shortens the file.
+   */
+  @Test
+  void removeFlushedTest() throws Exception {
+    Path path = this.dir.resolve("remove.blk");
+    try (BlockChain chain = build(path, 10)) {
+      chain.sync();
+      long size = Files.size(path);
+      chain.removeLast();
+      chain.removeLast();
+      assertTrue(Files.size(path) < size, "file shrank");
+    } // try
+    try (BlockChain chain = new BlockChain(ANY, new Miner(1), path)) {
+      assertEquals(8, chain.getSize(), "removed blocks stay gone");
+    } // try
+  } // removeFlushedTest()
+
+  /**
+   * A record with a bad checksum ends the log.
+   */
+  @Test
+  void corruptTailTest() throws Exception {
+    Path path = this.dir.resolve("corrupt.blk");
+    build(path, 10).close();
+    long size = Files.size(path);
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+      channel.write(ByteBuffer.wrap(new byte[] {42}), size - 3);
+    } // try
+
+    try (BlockChain chain = new BlockChain(ANY, new Miner(1), path)) {
+      assertEquals(9, chain.getSize(), "dropped the corrupt block");
+      assertTrue(Files.size(path) < size, "cut off the corrupt record");
+      Block last = chain.getBlockByNumber(8);
+      Hash hash = last.getHash();
+      chain.removeLast();
+      assertEquals(hash, last.getHash(), "removed blocks keep their hashes");
+    } // try
+  } // corruptTailTest()
+
+  /**
+   * A record too long to fit in one window ends the log, even when the
+   * file is long enough to hold it.
+   */
+  @Test
+  void oversizeTailTest() throws Exception {
+    Path path = this.dir.resolve("oversize.blk");
+    long window = 512;
+    build(path, 10).close();
+    long size = Files.size(path);
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+      channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, (int) window), size);
+      channel.write(ByteBuffer.wrap(new byte[] {1}), size + 2 * window);
+    } // try
+
+    try (BlockFile file = new BlockFile(path, 1, 0, window);
+        BlockChain chain = new BlockChain(ANY, new Miner(1), file)) {
+      assertTrue(size > window, "records span several windows");
+      assertEquals(10, chain.getSize(), "kept every block before the record");
+      assertEquals(size, Files.size(path), "cut off the record");
+      assertTrue(chain.isCorrect(), "the rest checks out");
+    } // try
+  } // oversizeTailTest()
+
+  /**
+   * Groups are committed once their oldest block has waited long enough,
+   * or once they are full.
+   */
+  @Test
+  void groupCommitTest() throws Exception {
+    Path path = this.dir.resolve("group.blk");
+    try (BlockFile file = new BlockFile(path, 1000, 20);
+        BlockChain chain = new BlockChain(ANY, new Miner(1), file)) {
+      long empty = Files.size(path);
+      chain.append(chain.mine(new Transaction("", "Alpha", 5)));
+      assertTrue(file.awaitCommit(10_000), "committed by the committer thread");
+      assertTrue(Files.size(path) > empty, "committed after the latency");
+    } // try
+
+    Path batch = this.dir.resolve("batch.blk");
+    try (BlockFile file = new BlockFile(batch, 3, 1_000_000);
+        BlockChain chain = new BlockChain(ANY, new Miner(1), file)) {
+      long size = Files.size(batch);
+      chain.append(chain.mine(new Transaction("", "Alpha", 5)));
+      chain.append(chain.mine(new Transaction("", "Alpha", 5)));
+      assertEquals(size, Files.size(batch), "waiting for a full group");
+      chain.append(chain.mine(new Transaction("", "Alpha", 5)));
+      assertTrue(Files.size(batch) > size, "committed a full group");
+    } // try
+    try (BlockFile reopened = new BlockFile(batch)) {
+      assertEquals(4, reopened.size(), "all blocks written");
+    } // try
+  } // groupCommitTest()
+} // class TestBlockFile
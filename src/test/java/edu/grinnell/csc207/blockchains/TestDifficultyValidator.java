@@ -0,0 +1,104 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Some simple tests of our DifficultyValidator class.
+ *
+ * @author Sara Jaljaa
+ * @author Jenifer Silva
+ */
+public class TestDifficultyValidator {
+  /**
+   * Count leading zero bits across byte and word boundaries.
+   */
+  @Test
+  public void leadingZeroTests() {
+    assertEquals(0, DifficultyValidator.leadingZeroBits(new Hash(new byte[] {-1})), "none");
+    assertEquals(7, DifficultyValidator.leadingZeroBits(new Hash(new byte[] {1})), "seven");
+    assertEquals(8, DifficultyValidator.leadingZeroBits(new Hash(new byte[] {0})), "all zero");
+    byte[] bytes = new byte[Hash.MAX_BYTES];
+    bytes[9] = 0x10;
+    assertEquals(75, DifficultyValidator.leadingZeroBits(new Hash(bytes)), "second word");
+    bytes[9] = 0;
+    assertEquals(256, DifficultyValidator.leadingZeroBits(new Hash(bytes)), "every bit");
+  } // leadingZeroTests()
+
+  /**
+   * Validate hashes at bit-level difficulties.
+   */
+  @Test
+  public void validTests() {
+    Hash h = new Hash(new byte[] {0, 0x0F, 1});
+    assertTrue(new DifficultyValidator(0).isValid(h), "no difficulty");
+    assertTrue(new DifficultyValidator(12).isValid(h), "exactly 12 bits");
+    assertFalse(new DifficultyValidator(13).isValid(h), "13 bits");
+    assertFalse(new DifficultyValidator(9).isValid(new Hash(new byte[] {0})), "short hash");
+    assertThrows(IllegalArgumentException.class, () -> new DifficultyValidator(-1));
+    assertThrows(IllegalArgumentException.class, () -> new DifficultyValidator(257));
+  } // validTests()
+
+  /**
+   * Mining with a difficulty validator finds the same nonce as mining
+   * with an equivalent lambda.
+   */
+  @Test
+  public void mineTests() throws Exception {
+    Hash prev = new Hash(new byte[Hash.MAX_BYTES]);
+    Transaction t = new Transaction("A", "B", 3);
+    for (int bits = 0; bits <= 12; bits += 3) {
+      int required = bits;
+      HashValidator slow = (h) -> DifficultyValidator.leadingZeroBits(h) >= required;
+      Block fast = new Block(1, t, prev, new DifficultyValidator(bits));
+      assertEquals(new Block(1, t, prev, slow).getNonce(), fast.getNonce(), bits + " bits");
+      assertEquals(new Block(1, t, prev, fast.getNonce()).getHash(), fast.getHash(),
+          "rebuilt from the nonce");
+      assertTrue(DifficultyValidator.leadingZeroBits(fast.getHash()) >= bits, "valid hash");
+    } // for
+  } // mineTests()
+
+  /**
+   * Validators that decide from the words of a hash agree with their
+   * Hash-based checks, and mining with one does not allocate per nonce.
+   */
+  @Test
+  public void wordTests() throws Exception {
+    byte[] bytes = new byte[Hash.MAX_BYTES];
+    bytes[9] = 0x10;
+    Hash h = new Hash(bytes);
+    for (int bits = 70; bits <= 80; bits++) {
+      DifficultyValidator v = new DifficultyValidator(bits);
+      assertEquals(v.isValid(h), v.isValid(h.word(0), h.word(1), h.word(2), h.word(3)),
+          bits + " bits");
+    } // for
+
+    HashValidator lambda = (hash) -> hash.get(0) == 0 && hash.get(1) == 0;
+    HashValidator words = new HashValidator() {
+      public boolean isValid(Hash hash) {
+        return lambda.isValid(hash);
+      } // isValid(Hash)
+
+      public boolean isValid(long w0, long w1, long w2, long w3) {
+        return (w0 >>> 48) == 0;
+      } // isValid(long, long, long, long)
+    };
+    Miner miner = new Miner(1);
+    Transaction t = new Transaction("A", "B", 3);
+    Hash prev = new Hash(new byte[Hash.MAX_BYTES]);
+    assertEquals(miner.mine(1, t, prev, lambda), miner.mine(1, t, prev, words), "same nonce");
+    com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long before = threads.getCurrentThreadAllocatedBytes();
+    long nonce = miner.mine(2, t, prev, words);
+    long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+    assertTrue(nonce > 1000, "tried many nonces");
+    assertTrue(allocated < 16 * nonce, "allocated " + allocated + " bytes for " + nonce);
+  } // wordTests()
+} // class TestDifficultyValidator
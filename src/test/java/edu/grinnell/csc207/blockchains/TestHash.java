@@ -5,6 +5,9 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.ByteBuffer;
 
 import org.junit.jupiter.api.Test;
 
@@ -106,5 +109,48 @@ public class TestHash {
     assertFalse(h.equals(new Hash(bytes)), 
        "a hash does not equal a hash made from its modified bytes");
   } // testReturnBytes
-  
+
+  /**
+   * Equal hashes have equal hash codes, and full-length hashes survive
+   * a trip through a buffer.
+   */
+  @Test
+  public void testFullLength() {
+    byte[] bytes = new byte[Hash.MAX_BYTES];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = (byte) (i * 37 - 100);
+    } // for
+    Hash h = new Hash(bytes);
+    assertEquals(new Hash(bytes).hashCode(), h.hashCode(), "equal hash codes");
+    assertArrayEquals(bytes, h.getBytes(), "full-length bytes");
+    assertEquals(String.format("%064X", new java.math.BigInteger(1, bytes)), h.toString(),
+        "full-length hex");
+
+    ByteBuffer buffer = ByteBuffer.allocate(Hash.MAX_BYTES + 1);
+    buffer.put((byte) 7);
+    h.writeTo(buffer);
+    assertEquals(h, Hash.readFrom(buffer, 1), "read back what was written");
+    assertFalse(h.equals(new Hash(new byte[] {(byte) -100})), "prefix is not equal");
+    assertFalse(new Hash(new byte[] {0}).equals(new Hash(new byte[] {0, 0})),
+        "trailing zero bytes count");
+    assertThrows(IllegalArgumentException.class, () -> new Hash(new byte[Hash.MAX_BYTES + 1]));
+    assertThrows(IndexOutOfBoundsException.class, () -> h.get(Hash.MAX_BYTES));
+  } // testFullLength()
+
+  /**
+   * Hashes that a hasher hands out keep their bits after it hashes again,
+   * so validators may hold on to them.
+   */
+  @Test
+  public void testHasherHashesKept() throws Exception {
+    BlockHasher hasher = new BlockHasher();
+    hasher.reset(1, new Transaction("", "Alpha", 5), null);
+    Hash first = hasher.hash(0);
+    String hex = first.toString();
+    Hash second = hasher.hash(1);
+    assertNotEquals(first, second, "different nonces");
+    assertEquals(hex, first.toString(), "first hash unchanged");
+    assertEquals(Block.computeHash(1, new Transaction("", "Alpha", 5), null, 0), first,
+        "first hash still right");
+  } // testHasherHashesKept()
 } // class TestHash
@@ -0,0 +1,121 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.security.MessageDigest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of Merkle trees and inclusion proofs.
+ *
+ * @author Sara Jaljaa
+ * @author Jenifer Silva
+ */
+public class TestMerkleTree {
+  /**
+   * Make some transactions.
+   */
+  static Transaction[] transactions(int n) {
+    Transaction[] ts = new Transaction[n];
+    for (int i = 0; i < n; i++) {
+      ts[i] = new Transaction((i == 0) ? "" : "M" + (i - 1), "M" + i, i);
+    } // for
+    return ts;
+  } // transactions(int)
+
+  /**
+   * Compute a root one level at a time, on one thread.
+   */
+  static Hash expectedRoot(Transaction[] ts) {
+    MessageDigest md = MerkleTree.digest();
+    byte[][] level = new byte[ts.length][];
+    for (int i = 0; i < ts.length; i++) {
+      level[i] = MerkleTree.leaf(md, ts[i]);
+    } // for
+    for (int size = level.length; size > 1; size = (size + 1) / 2) {
+      for (int i = 0; i < size; i += 2) {
+        level[i / 2] = (i + 1 < size) ? MerkleTree.node(md, level[i], level[i + 1]) : level[i];
+      } // for
+    } // for
+    return new Hash(MerkleTree.bind(md, ts.length, level[0]));
+  } // expectedRoot(Transaction[])
+
+  /**
+   * Every transaction in trees of many shapes has a short proof that checks.
+   */
+  @Test
+  public void proofTests() {
+    for (int n = 1; n <= 33; n++) {
+      Transaction[] ts = transactions(n);
+      MerkleTree tree = new MerkleTree(ts);
+      assertEquals(expectedRoot(ts), tree.getRoot(), n + " transactions");
+      int height = 32 - Integer.numberOfLeadingZeros(n - 1);
+      for (int i = 0; i < n; i++) {
+        MerkleProof proof = tree.prove(i);
+        assertTrue(proof.length() <= height, "proof " + i + " of " + n + " is short");
+        assertTrue(proof.verify(ts[i], tree.getRoot()), "proof " + i + " of " + n);
+        if (n > 1) {
+          assertFalse(proof.verify(ts[(i + 1) % n], tree.getRoot()),
+              "proof " + i + " of " + n + " for another transaction");
+        } // if
+      } // for
+    } // for
+    assertThrows(IndexOutOfBoundsException.class, () -> new MerkleTree(transactions(3)).prove(3));
+    assertThrows(IllegalArgumentException.class, () -> new MerkleTree(new Transaction[0]));
+  } // proofTests()
+
+  /**
+   * A proof cannot claim a different position or block size than the
+   * one the root was built from.
+   */
+  @Test
+  public void positionTests() {
+    Transaction[] ts = transactions(3);
+    MerkleTree tree = new MerkleTree(ts);
+    MessageDigest md = MerkleTree.digest();
+    Hash[] siblings = {new Hash(MerkleTree.node(md, MerkleTree.leaf(md, ts[0]),
+        MerkleTree.leaf(md, ts[1])))};
+    assertTrue(new MerkleProof(2, 3, siblings).verify(ts[2], tree.getRoot()), "honest proof");
+    assertFalse(new MerkleProof(1, 2, siblings).verify(ts[2], tree.getRoot()),
+        "same path, as the second of two");
+    assertFalse(new MerkleProof(3, 3, siblings).verify(ts[2], tree.getRoot()),
+        "index past the count");
+    assertFalse(new MerkleProof(-1, 3, siblings).verify(ts[2], tree.getRoot()),
+        "negative index");
+  } // positionTests()
+
+  /**
+   * Large trees, hashed in parallel, match trees hashed on one thread.
+   */
+  @Test
+  public void parallelTests() {
+    Transaction[] ts = transactions(5 * MerkleTree.PARALLEL_THRESHOLD + 3);
+    MerkleTree tree = new MerkleTree(ts);
+    assertEquals(expectedRoot(ts), tree.getRoot(), "same root");
+    MerkleProof proof = tree.prove(ts.length - 1);
+    assertTrue(proof.verify(ts[ts.length - 1], tree.getRoot()), "last transaction");
+    assertFalse(proof.verify(ts[ts.length - 1], new MerkleTree(transactions(4)).getRoot()),
+        "wrong root");
+  } // parallelTests()
+
+  /**
+   * Blocks prove their transactions against the root their hash covers.
+   */
+  @Test
+  public void blockTests() throws Exception {
+    Transaction[] ts = transactions(6);
+    Hash prev = new Hash(new byte[Hash.MAX_BYTES]);
+    Block blk = new Block(3, ts, prev, (h) -> true);
+    assertEquals(expectedRoot(ts), blk.getMerkleRoot(), "block root");
+    assertEquals(Block.computeHash(3, ts, prev, blk.getNonce()), blk.getHash(), "block hash");
+    for (int i = 0; i < ts.length; i++) {
+      assertTrue(blk.prove(i).verify(ts[i], blk.getMerkleRoot()), "transaction " + i);
+    } // for
+    assertFalse(blk.prove(2).verify(new Transaction("M1", "M2", 3), blk.getMerkleRoot()),
+        "changed amount");
+  } // blockTests()
+} // class TestMerkleTree
@@ -0,0 +1,146 @@
+package edu.grinnell.csc207.blockchains;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests of difficulty retargeting.
+ *
+ * @author Sara Jaljaa
+ * @author Jenifer Silva
+ */
+public class TestRetargetPolicy {
+  /**
+   * A directory for the files.
+   */
+  @TempDir
+  Path dir;
+
+  /**
+   * A policy whose target (an hour per block) is never met, so every
+   * interval raises the difficulty as far as it may.
+   */
+  static RetargetPolicy eager() {
+    return new RetargetPolicy(4, 3_600_000, 0, 0, 6);
+  } // eager()
+
+  /**
+   * Steps follow the log of the speed-up, limited and clamped.
+   */
+  @Test
+  public void retargetTests() {
+    RetargetPolicy policy = new RetargetPolicy(10, 100, 8, 4, 20);
+    long target = 10 * 100 * 1_000_000L;
+    assertEquals(8, policy.retarget(8, target), "on target");
+    assertEquals(9, policy.retarget(8, target / 2), "twice as fast");
+    assertEquals(7, policy.retarget(8, target * 2), "twice as slow");
+    assertEquals(10, policy.retarget(8, 1), "limited step up");
+    assertEquals(6, policy.retarget(8, target * 1000), "limited step down");
+    assertEquals(20, policy.retarget(19, 1), "maximum");
+    assertEquals(4, policy.retarget(5, target * 1000), "minimum");
+    assertEquals(9, policy.retarget(8, target * 2 / 3), "one bit up at 2/3");
+    assertEquals(8, policy.retarget(8, target * 2 / 3 + 1), "no change past 2/3");
+    assertEquals(10, policy.retarget(8, target / 3), "two bits up at 1/3");
+    assertEquals(7, policy.retarget(8, target * 3 / 2), "one bit down at 3/2");
+    assertEquals(8, policy.retarget(8, target * 3 / 2 - 1), "no change below 3/2");
+    assertEquals(6, policy.retarget(8, target * 3), "two bits down at 3");
+    assertEquals(6, policy.retarget(8, Long.MAX_VALUE), "longest interval");
+    assertEquals(10, policy.retarget(8, 0), "shortest interval");
+    assertFalse(policy.adjustsAfter(0), "not after the initial block");
+    assertFalse(policy.adjustsAfter(9), "mid-interval");
+    assertTrue(policy.adjustsAfter(20), "end of interval");
+    assertThrows(IllegalArgumentException.class, () -> new RetargetPolicy(0, 1, 0, 0, 0));
+    assertThrows(IllegalArgumentException.class, () -> new RetargetPolicy(1, 1, 3, 4, 5));
+    assertThrows(IllegalArgumentException.class, () -> new RetargetPolicy(1, 1, 0, 0, 257));
+    assertThrows(IllegalArgumentException.class,
+        () -> new RetargetPolicy(1000, Long.MAX_VALUE / 1000, 0, 0, 0));
+  } // retargetTests()
+
+  /**
+   * A chain raises its difficulty after each fast interval, rejects blocks
+   * at the wrong difficulty, and restores the difficulty on removal.
+   */
+  @Test
+  public void chainTests() throws Exception {
+    BlockChain chain = new BlockChain(eager(), new Miner(1));
+    chain.append(chain.mine(new Transaction("", "A", 100)));
+    for (int i = 2; i <= 12; i++) {
+      Block blk = chain.mine(new Transaction("A", "B", 1));
+      assertEquals(Math.min(6, 2 * ((i - 1) / 4)), blk.getDifficulty(), "block " + i);
+      assertTrue(DifficultyValidator.leadingZeroBits(blk.getHash()) >= blk.getDifficulty());
+      chain.append(blk);
+    } // for
+    assertEquals(6, chain.getDifficulty(), "after three intervals");
+    assertTrue(chain.isCorrect(), "correct");
+
+    Block easy = new Block(13, new Transaction("A", "B", 1), chain.getHash(), 0L, 0);
+    assertThrows(IllegalArgumentException.class, () -> chain.append(easy));
+
+    chain.removeLast();
+    assertEquals(4, chain.getDifficulty(), "restored");
+    chain.append(chain.mine(new Transaction("A", "B", 1)));
+    assertEquals(6, chain.getDifficulty(), "raised again");
+  } // chainTests()
+
+  /**
+   * The difficulty and time a block records are covered by its hash, and a
+   * chain rejects blocks whose time goes back or is too far ahead.
+   */
+  @Test
+  public void stampTests() throws Exception {
+    BlockChain chain = new BlockChain(eager(), new Miner(1));
+    chain.append(chain.mine(new Transaction("", "A", 100)));
+    for (int i = 2; i <= 5; i++) {
+      chain.append(chain.mine(new Transaction("A", "B", 1)));
+    } // for
+    Block blk = chain.mine(new Transaction("A", "B", 1));
+    assertEquals(2, blk.getDifficulty(), "raised");
+    assertTrue(blk.getTimestamp() >= chain.getBlockByNumber(4).getTimestamp(), "in order");
+    Transaction[] ts = {new Transaction("A", "B", 1)};
+    assertNotEquals(blk.getHash(), new Block(5, ts, blk.getPrevHash(), blk.getNonce(),
+        blk.getDifficulty() - 2, blk.getTimestamp()).getHash(), "difficulty hashed");
+    assertNotEquals(blk.getHash(), new Block(5, ts, blk.getPrevHash(), blk.getNonce(),
+        blk.getDifficulty(), blk.getTimestamp() + 1).getHash(), "time hashed");
+
+    long nonce = Block.mine(5, ts, chain.getHash(), 2, 1L,
+        new DifficultyValidator(2), Miner.defaultMiner());
+    Block early = new Block(5, ts, chain.getHash(), nonce, 2, 1L);
+    assertThrows(IllegalArgumentException.class, () -> chain.append(early), "backdated");
+    long future = System.currentTimeMillis() + 10 * BlockChain.MAX_DRIFT_MILLIS;
+    nonce = Block.mine(5, ts, chain.getHash(), 2, future, new DifficultyValidator(2),
+        Miner.defaultMiner());
+    Block late = new Block(5, ts, chain.getHash(), nonce, 2, future);
+    assertThrows(IllegalArgumentException.class, () -> chain.append(late), "future-dated");
+    chain.append(blk);
+    assertTrue(chain.isCorrect(), "correct");
+  } // stampTests()
+
+  /**
+   * Recorded difficulties survive a round trip through a file.
+   */
+  @Test
+  public void fileTests() throws Exception {
+    Path path = this.dir.resolve("retarget.blk");
+    try (BlockChain chain = new BlockChain(eager(), new Miner(1), new BlockFile(path))) {
+      chain.append(chain.mine(new Transaction("", "A", 100)));
+      for (int i = 2; i <= 6; i++) {
+        chain.append(chain.mine(new Transaction("A", "B", 1)));
+      } // for
+    } // try
+    try (BlockChain chain = new BlockChain(eager(), new Miner(1), new BlockFile(path))) {
+      assertEquals(7, chain.getSize(), "size");
+      assertEquals(2, chain.getBlockByNumber(6).getDifficulty(), "recorded");
+      assertEquals(2, chain.getDifficulty(), "resumed");
+      assertTrue(chain.isCorrect(), "correct");
+      chain.fullRevalidate();
+    } // try
+  } // fileTests()
+} // class TestRetargetPolicy
@@ -1,6 +1,8 @@
 package edu.grinnell.csc207.blockchains;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import org.junit.jupiter.api.Test;
 
@@ -38,4 +40,19 @@ public class TestTransaction {
         trans.toString(),
         "String representation of deposit");
   } // depositTest()
+
+  /**
+   * Test that transactions with the same users share their ids.
+   */
+  @Test
+  public void idTest() {
+    Transaction a = new Transaction("Here", "There", 10);
+    Transaction b = new Transaction(new String("Here"), "There", 10);
+    assertEquals(a.getSourceId(), b.getSourceId(), "same source id");
+    assertEquals(a.getTargetId(), b.getTargetId(), "same target id");
+    assertEquals(a, b, "equal transactions");
+    assertEquals(a.hashCode(), b.hashCode(), "equal hash codes");
+    assertTrue(new Transaction("", "There", 1).isDeposit(), "deposit");
+    assertFalse(a.isDeposit(), "transfer");
+  } // idTest()
 } // class TestTransaction
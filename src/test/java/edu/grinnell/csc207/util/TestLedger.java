@@ -0,0 +1,103 @@
+package edu.grinnell.csc207.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Some simple tests of our Ledger class.
+ *
+ * @author Sara Jaljaa
+ * @author Jenifer Silva
+ */
+public class TestLedger {
+  /**
+   * Basic gets, sets, and adds.
+   */
+  @Test
+  public void basicTests() throws Exception {
+    Ledger ledger = new Ledger();
+    assertEquals(0, ledger.get(1), "missing user has no money");
+    assertFalse(ledger.hasKey(1), "missing user is missing");
+    ledger.set(1, 10);
+    assertEquals(10, ledger.get(1), "after set");
+    assertEquals(15, ledger.add(1, 5), "after add");
+    assertEquals(-3, ledger.add(0, -3), "add creates the user");
+    assertEquals(2, ledger.size(), "two users");
+    ledger.remove(1);
+    assertFalse(ledger.hasKey(1), "removed user is missing");
+    assertTrue(ledger.hasKey(0), "other user remains");
+    assertEquals(1, ledger.size(), "one user");
+    assertThrows(IllegalArgumentException.class, () -> ledger.set(-1, 1), "negative id");
+  } // basicTests()
+
+  /**
+   * Many random operations agree with a HashMap.
+   */
+  @Test
+  public void randomTests() throws Exception {
+    Ledger ledger = new Ledger();
+    Map<Integer, Long> expected = new HashMap<Integer, Long>();
+    Random random = new Random(207);
+    for (int i = 0; i < 100000; i++) {
+      int user = random.nextInt(2000);
+      if (random.nextInt(4) == 0) {
+        ledger.remove(user);
+        expected.remove(user);
+      } else {
+        long delta = random.nextInt(100) - 50;
+        ledger.add(user, delta);
+        expected.merge(user, delta, Long::sum);
+      } // if/else
+    } // for
+    assertEquals(expected.size(), ledger.size(), "sizes match");
+    for (Map.Entry<Integer, Long> entry : expected.entrySet()) {
+      assertEquals(entry.getValue(), ledger.get(entry.getKey()), "user " + entry.getKey());
+    } // for
+    int count = 0;
+    PrimitiveIterator.OfInt users = ledger.users();
+    while (users.hasNext()) {
+      assertTrue(expected.containsKey(users.nextInt()), "iterated user exists");
+      count++;
+    } // while
+    assertEquals(expected.size(), count, "iterated every user");
+  } // randomTests()
+
+  /**
+   * Names get dense ids that stay the same.
+   */
+  @Test
+  public void dictionaryTests() {
+    UserDictionary dict = new UserDictionary();
+    assertEquals(UserDictionary.DEPOSIT, dict.intern(""), "deposits are id 0");
+    int alpha = dict.intern("Alpha");
+    int beta = dict.intern("Beta");
+    assertEquals(1, alpha, "first name");
+    assertEquals(2, beta, "second name");
+    assertEquals(alpha, dict.intern(new String("Alpha")), "same id for an equal name");
+    assertEquals("Beta", dict.name(beta), "name for an id");
+    assertEquals(-1, dict.idOf("Gamma"), "unknown name");
+    assertEquals(-1, dict.idOf(null), "null name");
+    for (int i = 0; i < 1000; i++) {
+      assertEquals(3 + i, dict.intern("user" + i), "id of user" + i);
+    } // for
+    assertEquals("user999", dict.name(1002), "name after growing");
+    assertThrows(IndexOutOfBoundsException.class, () -> dict.name(1003), "no such id");
+
+    UserDictionary small = new UserDictionary(3);
+    small.intern("Alpha");
+    small.intern("Beta");
+    assertThrows(IllegalStateException.class, () -> small.intern("Gamma"), "full dictionary");
+    assertEquals(1, small.intern("Alpha"), "known names still work when full");
+    assertEquals(3, small.size(), "no room was taken by the refused name");
+    assertThrows(IllegalArgumentException.class, () -> new UserDictionary(0), "no room");
+  } // dictionaryTests()
+} // class TestLedger
@@ -0,0 +1,96 @@
+package edu.grinnell.csc207.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Some simple tests of our PersistentLedger class.
+ *
+ * @author Sara Jaljaa
+ * @author Jenifer Silva
+ */
+public class TestPersistentLedger {
+  /**
+   * Check that a ledger holds exactly the expected balances.
+   */
+  static void assertLedger(Map<Integer, Long> expected, PersistentLedger ledger, String msg) {
+    assertEquals(expected.size(), ledger.size(), msg + ": size");
+    for (Map.Entry<Integer, Long> entry : expected.entrySet()) {
+      assertEquals(entry.getValue(), ledger.get(entry.getKey()), msg + ": user " + entry.getKey());
+    } // for
+    Set<Integer> seen = new HashSet<Integer>();
+    PrimitiveIterator.OfInt users = ledger.users();
+    while (users.hasNext()) {
+      int user = users.nextInt();
+      assertTrue(expected.containsKey(user), msg + ": iterated user " + user + " exists");
+      assertTrue(seen.add(user), msg + ": iterated user " + user + " once");
+    } // while
+    assertEquals(expected.size(), seen.size(), msg + ": iterated every user");
+  } // assertLedger(Map<Integer, Long>, PersistentLedger, String)
+
+  /**
+   * Basic gets and adds, which leave the original ledger alone.
+   */
+  @Test
+  public void basicTests() {
+    PersistentLedger empty = new PersistentLedger();
+    assertEquals(0, empty.get(1), "missing user has no money");
+    assertFalse(empty.hasKey(1), "missing user is missing");
+    PersistentLedger one = empty.add(1, 10);
+    PersistentLedger two = one.add(1, 5).add(0, -3);
+    assertEquals(10, one.get(1), "first version");
+    assertEquals(15, two.get(1), "second version");
+    assertEquals(-3, two.get(0), "add creates the user");
+    assertFalse(one.hasKey(0), "first version lacks the new user");
+    assertEquals(0, empty.size(), "empty stays empty");
+    assertEquals(2, two.size(), "two users");
+    assertEquals("{1:10}", one.toString(), "string");
+    assertThrows(IllegalArgumentException.class, () -> empty.add(-1, 1), "negative id");
+  } // basicTests()
+
+  /**
+   * Many random batches agree with HashMaps, and every earlier version
+   * keeps its balances.
+   */
+  @Test
+  public void randomTests() {
+    Random random = new Random(207);
+    ArrayList<PersistentLedger> versions = new ArrayList<PersistentLedger>();
+    ArrayList<Map<Integer, Long>> expected = new ArrayList<Map<Integer, Long>>();
+    versions.add(new PersistentLedger());
+    expected.add(new HashMap<Integer, Long>());
+    for (int batch = 0; batch < 300; batch++) {
+      Map<Integer, Long> map = new HashMap<Integer, Long>(expected.get(batch));
+      PersistentLedger.Builder builder = versions.get(batch).builder();
+      for (int i = random.nextInt(100); i > 0; i--) {
+        int user = (random.nextInt(3) == 0) ? random.nextInt(Integer.MAX_VALUE)
+            : random.nextInt(5000);
+        long delta = random.nextInt(100) - 50;
+        assertEquals(map.merge(user, delta, Long::sum), builder.add(user, delta),
+            "batch " + batch);
+        assertEquals(map.get(user), builder.get(user), "builder sees its change");
+      } // for
+      versions.add(builder.build());
+      expected.add(map);
+      builder.add(0, 1);
+      assertEquals(map.getOrDefault(0, 0L), versions.get(batch + 1).get(0),
+          "built ledger ignores later changes");
+    } // for
+    for (int v = 0; v < versions.size(); v += 37) {
+      assertLedger(expected.get(v), versions.get(v), "version " + v);
+    } // for
+    assertLedger(expected.get(versions.size() - 1), versions.get(versions.size() - 1), "last");
+  } // randomTests()
+} // class TestPersistentLedger
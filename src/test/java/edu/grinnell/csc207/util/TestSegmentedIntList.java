@@ -0,0 +1,122 @@
+package edu.grinnell.csc207.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Some simple tests of our SegmentedIntList class.
+ *
+ * @author Sara Jaljaa
+ * @author Jenifer Silva
+ */
+public class TestSegmentedIntList {
+  /**
+   * Adds and removes across segment boundaries.
+   */
+  @Test
+  public void basicTests() {
+    SegmentedIntList list = new SegmentedIntList();
+    int n = 5 * SegmentedIntList.SEGMENT_SIZE + 5;
+    for (int i = 0; i < n; i++) {
+      list.add(i);
+    } // for
+    assertEquals(n, list.size(), "size after adds");
+    for (int i = 0; i < n; i++) {
+      assertEquals(i, list.get(i), "value " + i);
+    } // for
+    for (int i = n - 1; i >= SegmentedIntList.SEGMENT_SIZE; i--) {
+      assertEquals(i, list.removeLast(), "removing " + i);
+    } // for
+    assertEquals(SegmentedIntList.SEGMENT_SIZE - 1, list.getLast(), "last after removes");
+    assertThrows(IndexOutOfBoundsException.class, () -> list.get(-1), "negative index");
+  } // basicTests()
+
+  /**
+   * Snapshots keep their values as the list shrinks and grows again, and
+   * cannot themselves be changed.
+   */
+  @Test
+  public void snapshotTests() {
+    SegmentedIntList list = new SegmentedIntList();
+    for (int i = 0; i < 100; i++) {
+      list.add(i);
+    } // for
+    SegmentedIntList before = list.snapshot();
+    list.add(100);
+    for (int i = 0; i < 51; i++) {
+      list.removeLast();
+    } // for
+    for (int i = 0; i < 20; i++) {
+      list.add(-i);
+    } // for
+    assertEquals(100, before.size(), "snapshot size");
+    for (int i = 0; i < 100; i++) {
+      assertEquals(i, before.get(i), "snapshot value " + i);
+    } // for
+    assertEquals(70, list.size(), "list size");
+    assertEquals(0, list.get(50), "list sees new values");
+    assertEquals(-19, list.getLast(), "list last");
+    assertThrows(UnsupportedOperationException.class, () -> before.add(0), "add to snapshot");
+    assertThrows(UnsupportedOperationException.class, () -> before.removeLast(),
+        "remove from snapshot");
+  } // snapshotTests()
+
+  /**
+   * Growing again after shrinking copies only the segment it writes into,
+   * not the segments before it.
+   */
+  @Test
+  public void copyTests() {
+    SegmentedIntList list = new SegmentedIntList();
+    int n = 3 * SegmentedIntList.SEGMENT_SIZE;
+    for (int i = 0; i < n; i++) {
+      list.add(i);
+    } // for
+    SegmentedIntList before = list.snapshot();
+    int keep = 2 * SegmentedIntList.SEGMENT_SIZE + 10;
+    while (list.size() > keep) {
+      list.removeLast();
+    } // while
+    list.add(-1);
+    assertEquals(keep - 1, before.get(keep - 1), "snapshot value before the change");
+    assertEquals(keep, before.get(keep), "snapshot keeps the overwritten value");
+    assertEquals(-1, list.getLast(), "list sees the new value");
+    assertTrue(list.segment(0) == before.segment(0), "first segment still shared");
+    assertTrue(list.segment(keep - 20) == before.segment(keep - 20),
+        "second segment still shared");
+    assertFalse(list.segment(keep) == before.segment(keep), "last segment copied");
+  } // copyTests()
+
+  /**
+   * Rolling back and regrowing the end of a long list, with a snapshot
+   * after every change, copies nothing on removal and only the path to
+   * the end on regrowth.
+   */
+  @Test
+  public void reorgTests() {
+    SegmentedIntList list = new SegmentedIntList();
+    int chunk = SegmentedIntList.SEGMENT_SIZE * SegmentedIntList.CHUNK_SIZE;
+    int n = 2 * chunk + 10;
+    for (int i = 0; i < n; i++) {
+      list.add(i);
+    } // for
+    SegmentedIntList before = list.snapshot();
+    for (int i = 0; i < 100; i++) {
+      list.removeLast();
+      assertTrue(list.snapshot().chunks == before.chunks, "removal copies nothing");
+    } // for
+    for (int i = 0; i < 100; i++) {
+      list.add(-i);
+      list.snapshot();
+    } // for
+    assertTrue(list.chunks[0] == before.chunks[0], "first chunk still shared");
+    assertTrue(list.segment(chunk) == before.segment(chunk), "earlier segments still shared");
+    assertEquals(n - 1, before.getLast(), "snapshot keeps its values");
+    assertEquals(0, list.get(n - 100), "list sees new values");
+    assertEquals(n, list.size(), "list size");
+  } // reorgTests()
+} // class TestSegmentedIntList
@@ -0,0 +1,117 @@
+package edu.grinnell.csc207.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Some simple tests of our SegmentedList class.
+ *
+ * @author Sara Jaljaa
+ * @author Jenifer Silva
+ */
+public class TestSegmentedList {
+  /**
+   * Adds and removes across segment boundaries.
+   */
+  @Test
+  public void basicTests() {
+    SegmentedList<Integer> list = new SegmentedList<Integer>();
+    int n = 3 * SegmentedList.SEGMENT_SIZE + 5;
+    for (int i = 0; i < n; i++) {
+      list.add(i);
+    } // for
+    assertEquals(n, list.size(), "size after adds");
+    for (int i = 0; i < n; i++) {
+      assertEquals(i, list.get(i), "element " + i);
+    } // for
+    for (int i = n - 1; i >= SegmentedList.SEGMENT_SIZE; i--) {
+      assertEquals(i, list.removeLast(), "removing " + i);
+    } // for
+    assertEquals(SegmentedList.SEGMENT_SIZE - 1, list.getLast(), "last after removes");
+  } // basicTests()
+
+  /**
+   * Snapshots keep their elements as the list grows, shrinks, and grows
+   * again, and cannot themselves be changed.
+   */
+  @Test
+  public void snapshotTests() {
+    SegmentedList<Integer> list = new SegmentedList<Integer>();
+    int n = 2 * SegmentedList.SEGMENT_SIZE + 3;
+    for (int i = 0; i < n; i++) {
+      list.add(i);
+    } // for
+    SegmentedList<Integer> before = list.snapshot();
+
+    /* Replace the last segment and a half with other values */
+    int keep = SegmentedList.SEGMENT_SIZE / 2;
+    while (list.size() > keep) {
+      list.removeLast();
+    } // while
+    SegmentedList<Integer> middle = list.snapshot();
+    for (int i = keep; i < 5 * SegmentedList.SEGMENT_SIZE; i++) {
+      list.add(-i);
+    } // for
+
+    assertEquals(n, before.size(), "first snapshot size");
+    for (int i = 0; i < n; i++) {
+      assertEquals(i, before.get(i), "first snapshot element " + i);
+    } // for
+    assertEquals(keep, middle.size(), "second snapshot size");
+    assertEquals(keep - 1, middle.getLast(), "second snapshot last");
+    assertEquals(-keep, list.get(keep), "list sees new values");
+    assertEquals(keep - 1, list.get(keep - 1), "list keeps old values");
+    assertThrows(UnsupportedOperationException.class, () -> before.add(0), "add to snapshot");
+    assertThrows(UnsupportedOperationException.class, () -> before.removeLast(),
+        "remove from snapshot");
+  } // snapshotTests()
+
+  /**
+   * Rolling back and regrowing the end of a long list, with a snapshot
+   * after every change, copies nothing on removal and only the path to
+   * the end on regrowth.
+   */
+  @Test
+  public void reorgTests() {
+    SegmentedList<Integer> list = new SegmentedList<Integer>();
+    int chunk = SegmentedList.SEGMENT_SIZE * SegmentedList.CHUNK_SIZE;
+    int n = 2 * chunk + 10;
+    Integer val = 7;
+    for (int i = 0; i < n; i++) {
+      list.add(val);
+    } // for
+    SegmentedList<Integer> before = list.snapshot();
+    for (int i = 0; i < 100; i++) {
+      list.removeLast();
+      assertSame(before.chunks, list.snapshot().chunks, "removal copies nothing");
+    } // for
+    for (int i = 0; i < 100; i++) {
+      list.add(-i);
+      list.snapshot();
+    } // for
+    assertSame(before.chunks[0], list.chunks[0], "first chunk still shared");
+    assertSame(before.segment(chunk), list.segment(chunk), "earlier segments still shared");
+    assertEquals(val, before.getLast(), "snapshot keeps its elements");
+    assertEquals(0, list.get(n - 100), "list sees new elements");
+    assertEquals(n, list.size(), "list size");
+  } // reorgTests()
+
+  /**
+   * Removing an element no snapshot can see lets go of it.
+   */
+  @Test
+  public void releaseTests() {
+    SegmentedList<Integer> list = new SegmentedList<Integer>();
+    list.add(1);
+    list.snapshot();
+    list.add(2);
+    list.removeLast();
+    assertNull(list.segment(0)[1], "unshared slot cleared");
+    list.removeLast();
+    assertEquals(1, list.segment(0)[0], "shared slot kept for the snapshot");
+  } // releaseTests()
+} // class TestSegmentedList